@@ -0,0 +1,265 @@
+package com.wetech.demo.web3j.address;
+
+import org.web3j.crypto.Hash;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A 20-byte account or contract address, held as two longs and an int so equality, hashing
+ * and ordering never touch a string. Parsing accepts {@code 0x}-prefixed or bare hex in any
+ * case and validates the EIP-55 checksum of mixed-case input.
+ * <p>
+ * {@link #of(String)} interns parsed addresses by their input text, so hot addresses are
+ * parsed and checksum-validated once and every lookup with the same text shares one instance.
+ */
+public final class Address20 implements Comparable<Address20> {
+
+    public static final Address20 ZERO = new Address20(0, 0, 0);
+
+    public static final int BYTES = 20;
+
+    private static final int HEX_DIGITS = 2 * BYTES;
+    private static final int MAX_INTERNED = 1 << 16;
+    private static final Map<String, Address20> INTERNED = new ConcurrentHashMap<>();
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    /** Bytes 0-7, big-endian */
+    private final long high;
+    /** Bytes 8-15 */
+    private final long middle;
+    /** Bytes 16-19 */
+    private final int low;
+
+    private String hex;
+
+    private Address20(long high, long middle, int low) {
+        this.high = high;
+        this.middle = middle;
+        this.low = low;
+    }
+
+    /**
+     * Parse an address through the interning cache
+     * @throws IllegalArgumentException if it is not 40 hex digits or fails its checksum
+     */
+    public static Address20 of(String address) {
+        if (address == null) {
+            throw new IllegalArgumentException("Invalid address: null");
+        }
+        Address20 interned = INTERNED.get(address);
+        if (interned != null) {
+            return interned;
+        }
+        Address20 parsed = parse(address);
+        if (INTERNED.size() >= MAX_INTERNED) {
+            // crude but allocation-free eviction: hot addresses come back on their next use
+            INTERNED.clear();
+        }
+        INTERNED.put(address, parsed);
+        return parsed;
+    }
+
+    /**
+     * Parse an address without interning it
+     * @throws IllegalArgumentException if it is not 40 hex digits or fails its checksum
+     */
+    public static Address20 parse(String address) {
+        int offset = address.startsWith("0x") || address.startsWith("0X") ? 2 : 0;
+        if (address.length() - offset != HEX_DIGITS) {
+            throw new IllegalArgumentException("Invalid address: " + address);
+        }
+        Address20 parsed = fromHex(address, offset);
+        if (parsed == null) {
+            throw new IllegalArgumentException("Invalid address: " + address);
+        }
+        if (isMixedCase(address, offset) && !parsed.toChecksumString().substring(2).equals(address.substring(offset))) {
+            throw new IllegalArgumentException("Invalid address checksum: " + address);
+        }
+        return parsed;
+    }
+
+    /**
+     * @param topic a 32-byte log topic holding a left-padded address
+     * @throws IllegalArgumentException if the topic is malformed
+     */
+    public static Address20 fromTopic(String topic) {
+        Address20 parsed = topic.length() == 66 ? fromHex(topic, 66 - HEX_DIGITS) : null;
+        if (parsed == null) {
+            throw new IllegalArgumentException("Not an address topic: " + topic);
+        }
+        return parsed;
+    }
+
+    /**
+     * @param bytes  a buffer holding the 20 address bytes
+     * @param offset the position of the first byte
+     */
+    public static Address20 fromBytes(byte[] bytes, int offset) {
+        return new Address20(readLong(bytes, offset), readLong(bytes, offset + 8),
+                (int) (readLong(bytes, offset + 12) & 0xffffffffL));
+    }
+
+    /**
+     * @param bytes  a buffer of at least 20 bytes from {@code offset}
+     * @param offset the position of the first byte
+     */
+    public void writeTo(byte[] bytes, int offset) {
+        writeLong(bytes, offset, high);
+        writeLong(bytes, offset + 8, middle);
+        for (int i = 0; i < 4; i++) {
+            bytes[offset + 16 + i] = (byte) (low >>> (24 - 8 * i));
+        }
+    }
+
+    /**
+     * @return 64 bits mixing all 160 address bits, e.g. for probabilistic sketches
+     */
+    public long hash64() {
+        return mix(mix(mix(high) ^ middle) ^ (low & 0xffffffffL));
+    }
+
+    /**
+     * @return the address with its EIP-55 checksum casing
+     */
+    public String toChecksumString() {
+        String lower = toString().substring(2);
+        byte[] hash = Hash.sha3(lower.getBytes(StandardCharsets.US_ASCII));
+        char[] chars = new char[2 + HEX_DIGITS];
+        chars[0] = '0';
+        chars[1] = 'x';
+        for (int i = 0; i < HEX_DIGITS; i++) {
+            char c = lower.charAt(i);
+            int nibble = (hash[i / 2] >> (i % 2 == 0 ? 4 : 0)) & 0x0f;
+            chars[2 + i] = c >= 'a' && nibble >= 8 ? Character.toUpperCase(c) : c;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return the lower-case {@code 0x}-prefixed address
+     */
+    @Override
+    public String toString() {
+        String result = hex;
+        if (result == null) {
+            char[] chars = new char[2 + HEX_DIGITS];
+            chars[0] = '0';
+            chars[1] = 'x';
+            writeHex(chars, 2, high, 16);
+            writeHex(chars, 18, middle, 16);
+            writeHex(chars, 34, low & 0xffffffffL, 8);
+            result = new String(chars);
+            hex = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof Address20 address
+                && high == address.high && middle == address.middle && low == address.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high) * 961 + Long.hashCode(middle) * 31 + low;
+    }
+
+    /**
+     * Orders like the unsigned address bytes
+     */
+    @Override
+    public int compareTo(Address20 other) {
+        int result = Long.compareUnsigned(high, other.high);
+        if (result == 0) {
+            result = Long.compareUnsigned(middle, other.middle);
+        }
+        return result != 0 ? result : Integer.compareUnsigned(low, other.low);
+    }
+
+    /**
+     * @return the address of the 40 hex digits from {@code offset}, or {@code null} if one is not hex
+     */
+    private static Address20 fromHex(String text, int offset) {
+        long high = 0;
+        long middle = 0;
+        long low = 0;
+        for (int i = 0; i < HEX_DIGITS; i++) {
+            int digit = hexDigit(text.charAt(offset + i));
+            if (digit < 0) {
+                return null;
+            }
+            if (i < 16) {
+                high = high << 4 | digit;
+            } else if (i < 32) {
+                middle = middle << 4 | digit;
+            } else {
+                low = low << 4 | digit;
+            }
+        }
+        return new Address20(high, middle, (int) low);
+    }
+
+    /**
+     * @return the value of an ASCII hex digit, {@code -1} for anything else; unlike
+     * {@link Character#digit(char, int)} this rejects full-width and other non-ASCII digits
+     */
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static boolean isMixedCase(String text, int offset) {
+        boolean lower = false;
+        boolean upper = false;
+        for (int i = offset; i < text.length(); i++) {
+            char c = text.charAt(i);
+            lower |= c >= 'a' && c <= 'f';
+            upper |= c >= 'A' && c <= 'F';
+        }
+        return lower && upper;
+    }
+
+    private static void writeHex(char[] chars, int offset, long value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            chars[offset + i] = DIGITS[(int) (value & 0x0f)];
+            value >>>= 4;
+        }
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            bytes[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
+    /**
+     * The MurmurHash3 64-bit finaliser
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,18 @@
+package com.wetech.demo.web3j.admission;
+
+/**
+ * Thrown when the queue of a {@link WorkClass} is full; mapped to {@code 429 Too Many Requests}.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final WorkClass workClass;
+
+    public AdmissionRejectedException(WorkClass workClass) {
+        super("Too many pending " + workClass.key() + " requests, retry later");
+        this.workClass = workClass;
+    }
+
+    public WorkClass getWorkClass() {
+        return workClass;
+    }
+}
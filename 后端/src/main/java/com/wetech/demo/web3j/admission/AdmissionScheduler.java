@@ -0,0 +1,248 @@
+package com.wetech.demo.web3j.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of the contract services.
+ * <p>
+ * At most {@code web3j.admission.max-concurrency} units of work run at once; the rest wait
+ * in one bounded queue per {@link WorkClass} and are rejected with
+ * {@link AdmissionRejectedException} when their queue is full. Free slots go to the queues
+ * by weighted fair (stride) scheduling, so under contention each class gets at least its
+ * weight's share, and {@code web3j.admission.write-reserved} slots are kept for writes
+ * alone so a read flood cannot occupy every slot.
+ * <p>
+ * Records the {@code admission.queue.depth}, {@code admission.in.flight},
+ * {@code admission.queue.wait} and {@code admission.rejected} meters.
+ */
+@Component
+@RequiredArgsConstructor
+public class AdmissionScheduler {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${web3j.admission.max-concurrency:64}")
+    private int maxConcurrency;
+
+    @Value("${web3j.admission.write-reserved:16}")
+    private int writeReserved;
+
+    @Value("${web3j.admission.read.queue-capacity:1000}")
+    private int readCapacity;
+
+    @Value("${web3j.admission.read.weight:3}")
+    private int readWeight;
+
+    @Value("${web3j.admission.write.queue-capacity:500}")
+    private int writeCapacity;
+
+    @Value("${web3j.admission.write.weight:6}")
+    private int writeWeight;
+
+    @Value("${web3j.admission.admin.queue-capacity:50}")
+    private int adminCapacity;
+
+    @Value("${web3j.admission.admin.weight:1}")
+    private int adminWeight;
+
+    private final Map<WorkClass, ClassQueue> queues = new EnumMap<>(WorkClass.class);
+    private int inFlight;
+    private double virtualTime;
+    /** Whether a thread is in {@link #drain()}; others leave the freed slots to it */
+    private boolean draining;
+
+    @PostConstruct
+    void init() {
+        if (writeReserved >= maxConcurrency) {
+            throw new IllegalStateException("web3j.admission.write-reserved must be below web3j.admission.max-concurrency");
+        }
+        queues.put(WorkClass.READ, new ClassQueue(WorkClass.READ, readCapacity, readWeight));
+        queues.put(WorkClass.WRITE, new ClassQueue(WorkClass.WRITE, writeCapacity, writeWeight));
+        queues.put(WorkClass.ADMIN, new ClassQueue(WorkClass.ADMIN, adminCapacity, adminWeight));
+        Gauge.builder("admission.in.flight", this, scheduler -> scheduler.inFlight)
+                .description("Admitted work currently running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run work once admitted, holding its slot until the work's future completes
+     * @see #submit(WorkClass, Supplier, CompletableFuture)
+     */
+    public <T> CompletableFuture<T> submit(WorkClass workClass, Supplier<CompletableFuture<T>> work) {
+        return submit(workClass, work, null);
+    }
+
+    /**
+     * Run work once admitted
+     * @param workClass the queue the work waits in
+     * @param work      starts the work
+     * @param release   frees the slot when completed, e.g. once a transaction was sent rather than
+     *                  mined; {@code null} to hold the slot until the work completes
+     * @return the result of the work
+     * @throws AdmissionRejectedException if the queue of {@code workClass} is full
+     */
+    public <T> CompletableFuture<T> submit(WorkClass workClass, Supplier<CompletableFuture<T>> work,
+                                           CompletableFuture<?> release) {
+        Task<T> task = new Task<>(workClass, work, release);
+        synchronized (this) {
+            ClassQueue queue = queues.get(workClass);
+            if (queue.tasks.size() >= queue.capacity) {
+                queue.rejected.increment();
+                throw new AdmissionRejectedException(workClass);
+            }
+            if (queue.tasks.isEmpty()) {
+                // an idle class re-enters at the current virtual time, without banked credit
+                queue.pass = Math.max(queue.pass, virtualTime);
+            }
+            queue.tasks.add(task);
+        }
+        drain();
+        return task.result;
+    }
+
+    /**
+     * Start queued work while slots are free. Not reentrant: work that completes synchronously
+     * releases its slot from inside {@link #run}, and the loop already running picks it up
+     * instead of recursing once per queued task.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            Task<?> task;
+            synchronized (this) {
+                task = next();
+                if (task == null) {
+                    // checked and cleared under the same lock, so no release is missed
+                    draining = false;
+                    return;
+                }
+                inFlight++;
+            }
+            run(task);
+        }
+    }
+
+    /**
+     * Pick the next task from the eligible queue with the lowest pass
+     */
+    private Task<?> next() {
+        if (inFlight >= maxConcurrency) {
+            return null;
+        }
+        ClassQueue selected = null;
+        for (ClassQueue queue : queues.values()) {
+            if (queue.tasks.isEmpty()) {
+                continue;
+            }
+            if (queue.workClass != WorkClass.WRITE && inFlight >= maxConcurrency - writeReserved) {
+                continue;
+            }
+            if (selected == null || queue.pass < selected.pass) {
+                selected = queue;
+            }
+        }
+        if (selected == null) {
+            return null;
+        }
+        virtualTime = selected.pass;
+        selected.pass += 1.0 / selected.weight;
+        return selected.tasks.poll();
+    }
+
+    private <T> void run(Task<T> task) {
+        ClassQueue queue = queues.get(task.workClass);
+        queue.wait.record(System.nanoTime() - task.enqueued, TimeUnit.NANOSECONDS);
+        CompletableFuture<T> future;
+        try {
+            future = task.work.get();
+        } catch (RuntimeException e) {
+            release();
+            task.result.completeExceptionally(e);
+            return;
+        }
+        (task.release != null ? task.release : future).whenComplete((ignored, ex) -> release());
+        future.whenComplete((result, ex) -> {
+            if (ex != null) {
+                task.result.completeExceptionally(ex);
+            } else {
+                task.result.complete(result);
+            }
+        });
+    }
+
+    private void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    private final class ClassQueue {
+
+        final WorkClass workClass;
+        final int capacity;
+        final int weight;
+        final Queue<Task<?>> tasks = new ArrayDeque<>();
+        final Counter rejected;
+        final Timer wait;
+        double pass;
+
+        ClassQueue(WorkClass workClass, int capacity, int weight) {
+            if (weight <= 0 || capacity <= 0) {
+                throw new IllegalStateException("Admission weight and queue capacity of " + workClass.key()
+                        + " must be positive");
+            }
+            this.workClass = workClass;
+            this.capacity = capacity;
+            this.weight = weight;
+            Gauge.builder("admission.queue.depth", tasks, Queue::size)
+                    .description("Work waiting for admission")
+                    .tag("class", workClass.key())
+                    .register(meterRegistry);
+            rejected = Counter.builder("admission.rejected")
+                    .description("Work rejected because its queue was full")
+                    .tag("class", workClass.key())
+                    .register(meterRegistry);
+            wait = Timer.builder("admission.queue.wait")
+                    .description("Time spent waiting for admission")
+                    .tag("class", workClass.key())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+
+    private static final class Task<T> {
+
+        final WorkClass workClass;
+        final Supplier<CompletableFuture<T>> work;
+        final CompletableFuture<?> release;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final long enqueued = System.nanoTime();
+
+        Task(WorkClass workClass, Supplier<CompletableFuture<T>> work, CompletableFuture<?> release) {
+            this.workClass = workClass;
+            this.work = work;
+            this.release = release;
+        }
+    }
+}
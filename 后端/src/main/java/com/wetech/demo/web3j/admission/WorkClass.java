@@ -0,0 +1,26 @@
+package com.wetech.demo.web3j.admission;
+
+/**
+ * Kinds of work scheduled by the {@link AdmissionScheduler}, each with its own queue.
+ */
+public enum WorkClass {
+
+    /** Contract calls: balances, allowances, stored values. */
+    READ("read"),
+
+    /** Transactions changing contract state. */
+    WRITE("write"),
+
+    /** Contract deployment and other operator actions. */
+    ADMIN("admin");
+
+    private final String key;
+
+    WorkClass(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+}
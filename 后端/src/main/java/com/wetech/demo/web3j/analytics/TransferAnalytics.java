@@ -0,0 +1,262 @@
+package com.wetech.demo.web3j.analytics;
+
+import com.wetech.demo.web3j.address.Address20;
+import com.wetech.demo.web3j.ledger.Transfer;
+import com.wetech.demo.web3j.ledger.TransferListener;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transfer statistics per token in tumbling windows of one block, one minute and one hour,
+ * updated from every range the transfer index completes. Minute and hour windows follow
+ * block timestamps and end at the last indexed block, so they only cover final blocks.
+ * Sliding windows are answered by merging the tumbling windows they span.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransferAnalytics implements TransferListener {
+
+    public enum Granularity {
+        BLOCK(1), MINUTE(60), HOUR(3600);
+
+        private final long step;
+
+        Granularity(long step) {
+            this.step = step;
+        }
+
+        public static Granularity of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown granularity: " + name + ", expected block, minute or hour");
+            }
+        }
+    }
+
+    private static final int HEADER_BATCH_SIZE = 100;
+
+    private final Web3j web3j;
+
+    @Value("${web3j.analytics.block-windows:64}")
+    private int blockWindows;
+
+    @Value("${web3j.analytics.minute-windows:120}")
+    private int minuteWindows;
+
+    @Value("${web3j.analytics.hour-windows:48}")
+    private int hourWindows;
+
+    private final Map<Address20, TokenWindows> tokens = new ConcurrentHashMap<>();
+
+    @Override
+    public void onTransfers(Address20 token, List<Transfer> transfers, long from, long through) {
+        Map<Long, Long> timestamps = timestamps(transfers, through);
+        // a range overlapping the windows means the ledger was rebuilt and replays them from scratch
+        TokenWindows windows = tokens.compute(token,
+                (key, existing) -> existing == null || from <= existing.through ? new TokenWindows() : existing);
+        synchronized (windows) {
+            for (Transfer transfer : transfers) {
+                windows.add(transfer, timestamps.get(transfer.block()));
+            }
+            windows.through = through;
+            windows.latestTimestamp = timestamps.get(through);
+            windows.trim();
+        }
+    }
+
+    @Override
+    public long retentionSeconds() {
+        return Math.max(minuteWindows * Granularity.MINUTE.step, hourWindows * Granularity.HOUR.step);
+    }
+
+    /**
+     * @param limit the number of windows, ending with the latest
+     * @return the latest tumbling windows, oldest first, or empty if nothing of the token was indexed
+     */
+    public Optional<Map<String, Object>> windows(String token, Granularity granularity, int limit) {
+        int retained = retention(granularity);
+        if (limit < 1 || limit > retained) {
+            throw new IllegalArgumentException("limit must be between 1 and " + retained + ": " + limit);
+        }
+        Address20 address = Address20.of(token);
+        TokenWindows windows = tokens.get(address);
+        if (windows == null) {
+            return Optional.empty();
+        }
+        synchronized (windows) {
+            Map<String, Object> response = windows.header(address);
+            List<Map<String, Object>> list = new ArrayList<>();
+            long end = windows.end(granularity);
+            if (end != Long.MIN_VALUE) {
+                for (long start = end - (limit - 1) * granularity.step; start <= end; start += granularity.step) {
+                    WindowStats stats = windows.of(granularity).getOrDefault(start, new WindowStats(start));
+                    list.add(granularity == Granularity.BLOCK
+                            ? stats.toResponse("block", start)
+                            : stats.toResponse("start", Instant.ofEpochSecond(start).toString()));
+                }
+            }
+            response.put("granularity", granularity.name().toLowerCase(Locale.ROOT));
+            response.put("windows", list);
+            return Optional.of(response);
+        }
+    }
+
+    /**
+     * @param minutes the window length, up to the retained minutes, or whole hours up to the retained hours
+     * @return the statistics of the last {@code minutes} minutes of block time up to the last indexed
+     * block, or empty if nothing of the token was indexed
+     */
+    public Optional<Map<String, Object>> sliding(String token, int minutes) {
+        Granularity granularity;
+        int windowCount;
+        if (minutes >= 1 && minutes <= minuteWindows) {
+            granularity = Granularity.MINUTE;
+            windowCount = minutes;
+        } else if (minutes > 0 && minutes % 60 == 0 && minutes / 60 <= hourWindows) {
+            granularity = Granularity.HOUR;
+            windowCount = minutes / 60;
+        } else {
+            throw new IllegalArgumentException("minutes must be between 1 and " + minuteWindows
+                    + " or whole hours up to " + hourWindows * 60 + ": " + minutes);
+        }
+        Address20 address = Address20.of(token);
+        TokenWindows windows = tokens.get(address);
+        if (windows == null) {
+            return Optional.empty();
+        }
+        synchronized (windows) {
+            Map<String, Object> response = windows.header(address);
+            long end = windows.end(granularity);
+            long start = end == Long.MIN_VALUE ? 0 : end - (windowCount - 1) * granularity.step;
+            WindowStats merged = new WindowStats(start);
+            if (end != Long.MIN_VALUE) {
+                windows.of(granularity).subMap(start, true, end, true).values().forEach(merged::merge);
+            }
+            response.put("minutes", minutes);
+            response.putAll(merged.toResponse("start", Instant.ofEpochSecond(start).toString()));
+            return Optional.of(response);
+        }
+    }
+
+    private int retention(Granularity granularity) {
+        return switch (granularity) {
+            case BLOCK -> blockWindows;
+            case MINUTE -> minuteWindows;
+            case HOUR -> hourWindows;
+        };
+    }
+
+    /**
+     * Fetch the timestamps of the blocks of {@code transfers} and of {@code through} in
+     * JSON-RPC batches of block headers
+     */
+    private Map<Long, Long> timestamps(List<Transfer> transfers, long through) {
+        TreeSet<Long> blocks = new TreeSet<>();
+        transfers.forEach(transfer -> blocks.add(transfer.block()));
+        blocks.add(through);
+        Map<Long, Long> timestamps = new HashMap<>();
+        List<Long> pending = new ArrayList<>(HEADER_BATCH_SIZE);
+        for (Long block : blocks) {
+            pending.add(block);
+            if (pending.size() == HEADER_BATCH_SIZE || block.equals(blocks.last())) {
+                BatchRequest batch = web3j.newBatch();
+                pending.forEach(number -> batch.add(
+                        web3j.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(number)), false)));
+                List<? extends Response<?>> responses;
+                try {
+                    responses = batch.send().getResponses();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to fetch block headers: " + e.getMessage(), e);
+                }
+                for (int i = 0; i < pending.size(); i++) {
+                    EthBlock.Block header = i < responses.size() ? ((EthBlock) responses.get(i)).getBlock() : null;
+                    if (header == null) {
+                        throw new IllegalStateException("Missing header of block " + pending.get(i));
+                    }
+                    timestamps.put(pending.get(i), header.getTimestamp().longValueExact());
+                }
+                pending.clear();
+            }
+        }
+        return timestamps;
+    }
+
+    /**
+     * The windows of one token; guarded by its own monitor
+     */
+    private final class TokenWindows {
+
+        private final NavigableMap<Long, WindowStats> blocks = new TreeMap<>();
+        private final NavigableMap<Long, WindowStats> minutes = new TreeMap<>();
+        private final NavigableMap<Long, WindowStats> hours = new TreeMap<>();
+        private long through = -1;
+        private long latestTimestamp = Long.MIN_VALUE;
+
+        private void add(Transfer transfer, long timestamp) {
+            window(blocks, transfer.block()).add(transfer);
+            window(minutes, timestamp - Math.floorMod(timestamp, Granularity.MINUTE.step)).add(transfer);
+            window(hours, timestamp - Math.floorMod(timestamp, Granularity.HOUR.step)).add(transfer);
+        }
+
+        private void trim() {
+            blocks.headMap(through - blockWindows, true).clear();
+            minutes.headMap(end(Granularity.MINUTE) - minuteWindows * Granularity.MINUTE.step, true).clear();
+            hours.headMap(end(Granularity.HOUR) - hourWindows * Granularity.HOUR.step, true).clear();
+        }
+
+        private NavigableMap<Long, WindowStats> of(Granularity granularity) {
+            return switch (granularity) {
+                case BLOCK -> blocks;
+                case MINUTE -> minutes;
+                case HOUR -> hours;
+            };
+        }
+
+        /**
+         * @return the start of the latest window, {@code Long.MIN_VALUE} if there is none yet
+         */
+        private long end(Granularity granularity) {
+            if (granularity == Granularity.BLOCK) {
+                return through < 0 ? Long.MIN_VALUE : through;
+            }
+            return latestTimestamp == Long.MIN_VALUE
+                    ? Long.MIN_VALUE
+                    : latestTimestamp - Math.floorMod(latestTimestamp, granularity.step);
+        }
+
+        private Map<String, Object> header(Address20 token) {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("contractAddress", token.toString());
+            response.put("indexedThrough", through);
+            return response;
+        }
+
+        private static WindowStats window(NavigableMap<Long, WindowStats> windows, long start) {
+            return windows.computeIfAbsent(start, WindowStats::new);
+        }
+    }
+}
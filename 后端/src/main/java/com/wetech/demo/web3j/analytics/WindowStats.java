@@ -0,0 +1,90 @@
+package com.wetech.demo.web3j.analytics;
+
+import com.wetech.demo.web3j.ledger.Transfer;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Transfer statistics of one window, updated one transfer at a time and mergeable with the
+ * statistics of other windows. Not thread-safe.
+ */
+final class WindowStats {
+
+    private final long start;
+    private long firstBlock = Long.MAX_VALUE;
+    private long lastBlock = Long.MIN_VALUE;
+    private long transfers;
+    private BigInteger volume = BigInteger.ZERO;
+    private long mints;
+    private BigInteger minted = BigInteger.ZERO;
+    private long burns;
+    private BigInteger burned = BigInteger.ZERO;
+    private final HyperLogLog senders = new HyperLogLog();
+    private final HyperLogLog receivers = new HyperLogLog();
+
+    /**
+     * @param start the block number or epoch second the window starts at
+     */
+    WindowStats(long start) {
+        this.start = start;
+    }
+
+    long start() {
+        return start;
+    }
+
+    void add(Transfer transfer) {
+        firstBlock = Math.min(firstBlock, transfer.block());
+        lastBlock = Math.max(lastBlock, transfer.block());
+        if (transfer.isMint()) {
+            mints++;
+            minted = minted.add(transfer.value());
+            receivers.add(transfer.to());
+        } else if (transfer.isBurn()) {
+            burns++;
+            burned = burned.add(transfer.value());
+            senders.add(transfer.from());
+        } else {
+            transfers++;
+            volume = volume.add(transfer.value());
+            senders.add(transfer.from());
+            receivers.add(transfer.to());
+        }
+    }
+
+    void merge(WindowStats other) {
+        firstBlock = Math.min(firstBlock, other.firstBlock);
+        lastBlock = Math.max(lastBlock, other.lastBlock);
+        transfers += other.transfers;
+        volume = volume.add(other.volume);
+        mints += other.mints;
+        minted = minted.add(other.minted);
+        burns += other.burns;
+        burned = burned.add(other.burned);
+        senders.merge(other.senders);
+        receivers.merge(other.receivers);
+    }
+
+    /**
+     * @param startKey the name of the window start, e.g. {@code block} or {@code start}
+     */
+    Map<String, Object> toResponse(String startKey, Object startValue) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put(startKey, startValue);
+        if (firstBlock <= lastBlock) {
+            response.put("firstBlock", firstBlock);
+            response.put("lastBlock", lastBlock);
+        }
+        response.put("transfers", transfers);
+        response.put("volume", volume.toString());
+        response.put("mints", mints);
+        response.put("minted", minted.toString());
+        response.put("burns", burns);
+        response.put("burned", burned.toString());
+        response.put("uniqueSenders", senders.estimate());
+        response.put("uniqueReceivers", receivers.estimate());
+        return response;
+    }
+}
@@ -1,12 +1,20 @@
 package com.wetech.demo.web3j.config;
 
+import com.wetech.demo.web3j.rpc.ConcurrencyLimitedWeb3jService;
+import com.wetech.demo.web3j.rpc.InstrumentedWeb3jService;
+import com.wetech.demo.web3j.rpc.MeteredHttpService;
+import com.wetech.demo.web3j.rpc.VegasLimit;
+import com.wetech.demo.web3j.sim.SimulatedRpcHandler;
+import com.wetech.demo.web3j.sim.SimulatedWeb3jService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.web3j.crypto.Credentials;
 import org.web3j.protocol.Web3j;
-import org.web3j.protocol.http.HttpService;
+import org.web3j.protocol.Web3jService;
 import org.web3j.tx.gas.ContractGasProvider;
 import org.web3j.tx.gas.StaticGasProvider;
 
@@ -28,10 +36,41 @@ public class Web3jConfig {
     @Value("${web3j.gas-limit:6721975}")
     private String gasLimit;
 
+    @Value("${web3j.rpc.limiter.enabled:true}")
+    private boolean limiterEnabled;
+
+    @Value("${web3j.rpc.limiter.initial-limit:16}")
+    private int initialLimit;
+
+    @Value("${web3j.rpc.limiter.min-limit:2}")
+    private int minLimit;
+
+    @Value("${web3j.rpc.limiter.max-limit:256}")
+    private int maxLimit;
+
+    @Value("${web3j.rpc.limiter.queue-capacity:1000}")
+    private int limiterQueueCapacity;
+
+    @Value("${web3j.rpc.limiter.max-wait-ms:5000}")
+    private long limiterMaxWait;
+
     @Bean
-    public Web3j web3j() {
-        log.info("Connecting to Ethereum client: {}", clientAddress);
-        return Web3j.build(new HttpService(clientAddress));
+    public Web3j web3j(MeterRegistry meterRegistry, ObjectProvider<SimulatedRpcHandler> simulatedNode) {
+        SimulatedRpcHandler simulated = simulatedNode.getIfAvailable();
+        Web3jService transport;
+        if (simulated != null) {
+            log.info("Connecting to the in-process simulated node");
+            transport = new SimulatedWeb3jService(simulated);
+        } else {
+            log.info("Connecting to Ethereum client: {}", clientAddress);
+            transport = new MeteredHttpService(clientAddress, meterRegistry);
+        }
+        Web3jService service = new InstrumentedWeb3jService(transport, meterRegistry);
+        if (limiterEnabled) {
+            service = new ConcurrencyLimitedWeb3jService(service, new VegasLimit(initialLimit, minLimit, maxLimit),
+                    limiterQueueCapacity, limiterMaxWait, meterRegistry);
+        }
+        return Web3j.build(service);
     }
 
     @Bean
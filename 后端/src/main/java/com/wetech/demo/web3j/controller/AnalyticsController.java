@@ -0,0 +1,66 @@
+package com.wetech.demo.web3j.controller;
+
+import com.wetech.demo.web3j.analytics.TransferAnalytics;
+import com.wetech.demo.web3j.service.ERC20Service;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private final TransferAnalytics transferAnalytics;
+    private final ERC20Service erc20Service;
+
+    /**
+     * Get transfer statistics in tumbling windows
+     * @param token       the token contract, the loaded ERC20 contract if omitted
+     * @param granularity {@code block}, {@code minute} or {@code hour}
+     * @param limit       the number of windows, ending with the one of the last indexed block
+     * @return per window the transfer count and volume, mint and burn totals and approximate
+     * numbers of distinct senders and receivers
+     */
+    @GetMapping("/transfers")
+    public ResponseEntity<Map<String, Object>> windows(
+            @RequestParam(required = false) String token,
+            @RequestParam(defaultValue = "minute") String granularity,
+            @RequestParam(defaultValue = "60") int limit) {
+        return answer(token, contract -> transferAnalytics.windows(contract,
+                TransferAnalytics.Granularity.of(granularity), limit));
+    }
+
+    /**
+     * Get transfer statistics over a sliding window
+     * @param token   the token contract, the loaded ERC20 contract if omitted
+     * @param minutes the window length in minutes of block time, ending at the last indexed block
+     */
+    @GetMapping("/transfers/sliding")
+    public ResponseEntity<Map<String, Object>> sliding(
+            @RequestParam(required = false) String token,
+            @RequestParam(defaultValue = "60") int minutes) {
+        return answer(token, contract -> transferAnalytics.sliding(contract, minutes));
+    }
+
+    private ResponseEntity<Map<String, Object>> answer(String token,
+                                                       Function<String, Optional<Map<String, Object>>> query) {
+        String contract = token != null ? token : erc20Service.getContractAddress();
+        if (contract == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "ERC20 contract not deployed or loaded"));
+        }
+        try {
+            return query.apply(contract)
+                    .map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body(Map.of("error", "No transfers indexed for " + contract)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Failed to get transfer statistics: " + e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.wetech.demo.web3j.controller;
+
+import com.wetech.demo.web3j.deploy.BulkDeployRequest;
+import com.wetech.demo.web3j.deploy.BulkDeployer;
+import com.wetech.demo.web3j.deploy.Deployment;
+import com.wetech.demo.web3j.registry.ContractRecord;
+import com.wetech.demo.web3j.registry.ContractRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/contracts")
+@RequiredArgsConstructor
+public class ContractRegistryController {
+
+    private final ContractRegistry registry;
+    private final BulkDeployer bulkDeployer;
+
+    /**
+     * List the deployed and loaded contracts
+     * @return the registry, in registration order
+     */
+    @GetMapping
+    public ResponseEntity<List<ContractRecord>> getContracts() {
+        return ResponseEntity.ok(registry.all());
+    }
+
+    /**
+     * Deploy many contracts at once; the addresses in the response are valid before the
+     * deployments are mined
+     * @param request the contract types, and whether to deploy through the CREATE2 factory
+     * @param wait    whether to hold the request until every deployment is mined
+     * @return the address, nonce and transaction of each deployment
+     */
+    @PostMapping("/deploy")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> deploy(
+            @RequestBody BulkDeployRequest request,
+            @RequestParam(defaultValue = "false") boolean wait) {
+        try {
+            bulkDeployer.validate(request);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
+        }
+        return bulkDeployer.deploy(request)
+                .thenCompose(deployments -> {
+                    CompletableFuture<?> mined = wait
+                            ? CompletableFuture.allOf(deployments.stream()
+                            .map(deployment -> deployment.receipt().handle((receipt, ex) -> null))
+                            .toArray(CompletableFuture[]::new))
+                            : CompletableFuture.completedFuture(null);
+                    return mined.thenApply(ignored -> {
+                        Map<String, Object> response = new LinkedHashMap<>();
+                        response.put("count", deployments.size());
+                        response.put("create2", request.create2());
+                        response.put("contracts", deployments.stream().map(Deployment::toResponse).toList());
+                        return wait ? ResponseEntity.ok(response) : ResponseEntity.accepted().body(response);
+                    });
+                })
+                .exceptionally(ex -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("error", "Bulk deployment failed: " + ex.getMessage());
+                    return ResponseEntity.badRequest().body(response);
+                });
+    }
+}
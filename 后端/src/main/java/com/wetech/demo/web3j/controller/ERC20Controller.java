@@ -1,14 +1,41 @@
 package com.wetech.demo.web3j.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wetech.demo.web3j.address.Address20;
+import com.wetech.demo.web3j.contracts.erc20dl202330550291.ERC20Dl202330550291;
+import com.wetech.demo.web3j.event.TransferEvent;
+import com.wetech.demo.web3j.idempotency.IdempotencyStore;
+import com.wetech.demo.web3j.ledger.HolderReport;
+import com.wetech.demo.web3j.ledger.LedgerIndexer;
+import com.wetech.demo.web3j.read.BulkBalanceReader;
+import com.wetech.demo.web3j.read.BulkBalanceRequest;
 import com.wetech.demo.web3j.service.ERC20Service;
+import com.wetech.demo.web3j.tx.TxTicket;
+import com.wetech.demo.web3j.tx.TxTrace;
+import com.wetech.demo.web3j.tx.TxTracer;
+import io.reactivex.disposables.Disposable;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 @Slf4j
@@ -18,13 +45,19 @@ import java.util.concurrent.CompletableFuture;
 public class ERC20Controller {
 
     private final ERC20Service erc20Service;
+    private final IdempotencyStore idempotencyStore;
+    private final TxTracer txTracer;
+    private final BulkBalanceReader bulkBalanceReader;
+    private final ObjectMapper objectMapper;
+    private final LedgerIndexer ledgerIndexer;
 
     /**
      * 部署 ERC20 合约
      */
     @PostMapping("/deploy")
-    public CompletableFuture<ResponseEntity<Map<String, String>>> deployContract() {
-        return erc20Service.deployContract()
+    public CompletableFuture<ResponseEntity<Map<String, String>>> deployContract(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        return idempotencyStore.execute(idempotencyKey, () -> "erc20 deploy", null, erc20Service::deployContract)
                 .thenApply(address -> {
                     Map<String, String> response = new HashMap<>();
                     response.put("contractAddress", address);
@@ -86,16 +119,21 @@ public class ERC20Controller {
     }
 
     /**
-     * 查询余额
+     * 查询余额，可指定区块号查询历史余额
      */
     @GetMapping("/balance")
-    public CompletableFuture<ResponseEntity<Map<String, String>>> getBalance(@RequestParam String address) {
-        return erc20Service.balanceOf(address)
+    public CompletableFuture<ResponseEntity<Map<String, String>>> getBalance(
+            @RequestParam String address,
+            @RequestParam(required = false) Long block) {
+        return (block == null ? erc20Service.balanceOf(address) : erc20Service.balanceOf(address, block))
                 .thenApply(balance -> {
                     Map<String, String> response = new HashMap<>();
                     response.put("address", address);
                     response.put("balance", balance.toString());
                     response.put("contractAddress", erc20Service.getContractAddress());
+                    if (block != null) {
+                        response.put("blockNumber", block.toString());
+                    }
                     return ResponseEntity.ok(response);
                 })
                 .exceptionally(ex -> {
@@ -105,30 +143,98 @@ public class ERC20Controller {
                 });
     }
 
+    /**
+     * 批量查询余额，结果以 NDJSON 流式返回（每行一个余额），所有余额均读取自同一区块（响应头 X-Block-Number）
+     */
+    @PostMapping("/balances")
+    public ResponseEntity<StreamingResponseBody> getBalances(@RequestBody BulkBalanceRequest request) {
+        List<String> tokens = request.tokens() == null || request.tokens().isEmpty()
+                ? (erc20Service.getContractAddress() == null ? List.of() : List.of(erc20Service.getContractAddress()))
+                : request.tokens();
+        BigInteger blockNumber;
+        try {
+            bulkBalanceReader.validate(tokens, request.addresses());
+            blockNumber = bulkBalanceReader.pinBlock(request.blockNumber());
+        } catch (IllegalArgumentException | IOException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", "Failed to get balances: " + e.getMessage());
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> objectMapper.writeValue(out, response));
+        }
+        StreamingResponseBody body = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            try {
+                bulkBalanceReader.read(tokens, request.addresses(), blockNumber, entries -> {
+                    try {
+                        for (BulkBalanceReader.BalanceEntry entry : entries) {
+                            Map<String, String> line = new LinkedHashMap<>();
+                            line.put("token", entry.token());
+                            line.put("address", entry.address());
+                            if (entry.error() == null) {
+                                line.put("balance", entry.balance().toString());
+                            } else {
+                                line.put("error", entry.error());
+                            }
+                            writer.write(objectMapper.writeValueAsString(line));
+                            writer.write('\n');
+                        }
+                        writer.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading balances", e);
+            }
+        };
+        return ResponseEntity.ok()
+                .header("X-Block-Number", blockNumber.toString())
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     /**
      * 转账
      */
     @PostMapping("/transfer")
     public CompletableFuture<ResponseEntity<Map<String, String>>> transfer(
             @RequestParam String to,
-            @RequestParam String value) {
+            @RequestParam String value,
+            @RequestHeader(value = TxTrace.DEBUG_HEADER, defaultValue = "false") boolean debug,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestParam(defaultValue = "false") boolean wait) {
+        TxTrace trace = txTracer.start(ERC20Dl202330550291.FUNC_TRANSFER);
         BigInteger amount = new BigInteger(value);
-        return erc20Service.transfer(to, amount)
-                .thenApply(receipt -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("transactionHash", receipt.getTransactionHash());
-                    response.put("blockNumber", receipt.getBlockNumber().toString());
-                    response.put("gasUsed", receipt.getGasUsed().toString());
-                    response.put("status", receipt.getStatus());
-                    response.put("from", erc20Service.getContractAddress());
-                    response.put("to", to);
-                    response.put("value", value);
-                    return ResponseEntity.ok(response);
-                })
-                .exceptionally(ex -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("error", "Transfer failed: " + ex.getMessage());
-                    return ResponseEntity.badRequest().body(response);
+        return idempotencyStore.execute(idempotencyKey,
+                        () -> "erc20 transfer to=" + Address20.of(to) + " value=" + amount, trace,
+                        () -> CompletableFuture.completedFuture(erc20Service.transfer(to, amount, trace)))
+                .thenCompose(ticket -> {
+                    if (!wait) {
+                        return CompletableFuture.completedFuture(accepted(ticket, trace, debug));
+                    }
+                    return ticket.receipt()
+                            .thenApply(receipt -> {
+                                Map<String, String> response = new HashMap<>();
+                                response.put("ticket", ticket.id());
+                                response.put("transactionHash", receipt.getTransactionHash());
+                                response.put("blockNumber", receipt.getBlockNumber().toString());
+                                response.put("gasUsed", receipt.getGasUsed().toString());
+                                response.put("status", receipt.getStatus());
+                                response.put("from", erc20Service.getContractAddress());
+                                response.put("to", to);
+                                response.put("value", value);
+                                if (debug) {
+                                    response.putAll(trace.toResponse());
+                                }
+                                return ResponseEntity.ok(response);
+                            })
+                            .exceptionally(ex -> {
+                                Map<String, String> response = new HashMap<>();
+                                response.put("error", "Transfer failed: " + ex.getMessage());
+                                return ResponseEntity.badRequest().body(response);
+                            });
                 });
     }
 
@@ -138,37 +244,101 @@ public class ERC20Controller {
     @PostMapping("/approve")
     public CompletableFuture<ResponseEntity<Map<String, String>>> approve(
             @RequestParam String spender,
-            @RequestParam String value) {
+            @RequestParam String value,
+            @RequestHeader(value = TxTrace.DEBUG_HEADER, defaultValue = "false") boolean debug,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestParam(defaultValue = "false") boolean wait) {
+        TxTrace trace = txTracer.start(ERC20Dl202330550291.FUNC_APPROVE);
         BigInteger amount = new BigInteger(value);
-        return erc20Service.approve(spender, amount)
-                .thenApply(receipt -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("transactionHash", receipt.getTransactionHash());
-                    response.put("spender", spender);
-                    response.put("amount", value);
-                    response.put("contractAddress", erc20Service.getContractAddress());
-                    return ResponseEntity.ok(response);
-                })
-                .exceptionally(ex -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("error", "Approve failed: " + ex.getMessage());
-                    return ResponseEntity.badRequest().body(response);
+        return idempotencyStore.execute(idempotencyKey,
+                        () -> "erc20 approve spender=" + Address20.of(spender) + " value=" + amount, trace,
+                        () -> CompletableFuture.completedFuture(erc20Service.approve(spender, amount, trace)))
+                .thenCompose(ticket -> {
+                    if (!wait) {
+                        return CompletableFuture.completedFuture(accepted(ticket, trace, debug));
+                    }
+                    return ticket.receipt()
+                            .thenApply(receipt -> {
+                                Map<String, String> response = new HashMap<>();
+                                response.put("ticket", ticket.id());
+                                response.put("transactionHash", receipt.getTransactionHash());
+                                response.put("spender", spender);
+                                response.put("amount", value);
+                                response.put("contractAddress", erc20Service.getContractAddress());
+                                if (debug) {
+                                    response.putAll(trace.toResponse());
+                                }
+                                return ResponseEntity.ok(response);
+                            })
+                            .exceptionally(ex -> {
+                                Map<String, String> response = new HashMap<>();
+                                response.put("error", "Approve failed: " + ex.getMessage());
+                                return ResponseEntity.badRequest().body(response);
+                            });
                 });
     }
 
     /**
-     * 查询授权额度
+     * 持币排行：由本地转账索引维护，返回最大的 limit 个持有人及各百分位的余额门槛
+     */
+    @GetMapping("/holders/top")
+    public ResponseEntity<Map<String, Object>> topHolders(
+            @RequestParam(required = false) String token,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "50,90,99") List<Double> percentiles) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        String contractAddress = token != null ? token : erc20Service.getContractAddress();
+        if (contractAddress == null) {
+            response.put("error", "ERC20 contract not deployed or loaded");
+            return ResponseEntity.badRequest().body(response);
+        }
+        Optional<HolderReport> report;
+        try {
+            report = ledgerIndexer.topHolders(contractAddress, limit, percentiles);
+        } catch (IllegalArgumentException e) {
+            response.put("error", "Failed to get top holders: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+        if (report.isEmpty()) {
+            response.put("error", "Contract is not indexed: " + contractAddress);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("contractAddress", report.get().token().toString());
+        response.put("blockNumber", report.get().blockNumber());
+        response.put("holders", report.get().holders());
+        List<Map<String, Object>> top = new ArrayList<>();
+        for (int i = 0; i < report.get().top().size(); i++) {
+            Map<String, Object> holder = new LinkedHashMap<>();
+            holder.put("rank", i + 1);
+            holder.put("address", report.get().top().get(i).address().toString());
+            holder.put("balance", report.get().top().get(i).balance().toString());
+            top.add(holder);
+        }
+        response.put("top", top);
+        Map<String, String> thresholds = new LinkedHashMap<>();
+        report.get().thresholds().forEach((percentile, balance) ->
+                thresholds.put("p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString(), balance.toString()));
+        response.put("percentiles", thresholds);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 查询授权额度，可指定区块号查询历史额度
      */
     @GetMapping("/allowance")
     public CompletableFuture<ResponseEntity<Map<String, String>>> allowance(
             @RequestParam String owner,
-            @RequestParam String spender) {
-        return erc20Service.allowance(owner, spender)
+            @RequestParam String spender,
+            @RequestParam(required = false) Long block) {
+        return (block == null ? erc20Service.allowance(owner, spender) : erc20Service.allowance(owner, spender, block))
                 .thenApply(amount -> {
                     Map<String, String> response = new HashMap<>();
                     response.put("owner", owner);
                     response.put("spender", spender);
                     response.put("allowance", amount.toString());
+                    if (block != null) {
+                        response.put("blockNumber", block.toString());
+                    }
                     return ResponseEntity.ok(response);
                 })
                 .exceptionally(ex -> {
@@ -185,22 +355,39 @@ public class ERC20Controller {
     public CompletableFuture<ResponseEntity<Map<String, String>>> transferFrom(
             @RequestParam String from,
             @RequestParam String to,
-            @RequestParam String value) {
+            @RequestParam String value,
+            @RequestHeader(value = TxTrace.DEBUG_HEADER, defaultValue = "false") boolean debug,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestParam(defaultValue = "false") boolean wait) {
+        TxTrace trace = txTracer.start(ERC20Dl202330550291.FUNC_TRANSFERFROM);
         BigInteger transferAmount = new BigInteger(value);
-        return erc20Service.transferFrom(from, to, transferAmount)
-                .thenApply(receipt -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("transactionHash", receipt.getTransactionHash());
-                    response.put("from", from);
-                    response.put("to", to);
-                    response.put("value", value);
-                    response.put("contractAddress", erc20Service.getContractAddress());
-                    return ResponseEntity.ok(response);
-                })
-                .exceptionally(ex -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("error", "Transfer from failed: " + ex.getMessage());
-                    return ResponseEntity.badRequest().body(response);
+        return idempotencyStore.execute(idempotencyKey,
+                        () -> "erc20 transferFrom from=" + Address20.of(from) + " to=" + Address20.of(to)
+                                + " value=" + transferAmount, trace,
+                        () -> CompletableFuture.completedFuture(erc20Service.transferFrom(from, to, transferAmount, trace)))
+                .thenCompose(ticket -> {
+                    if (!wait) {
+                        return CompletableFuture.completedFuture(accepted(ticket, trace, debug));
+                    }
+                    return ticket.receipt()
+                            .thenApply(receipt -> {
+                                Map<String, String> response = new HashMap<>();
+                                response.put("ticket", ticket.id());
+                                response.put("transactionHash", receipt.getTransactionHash());
+                                response.put("from", from);
+                                response.put("to", to);
+                                response.put("value", value);
+                                response.put("contractAddress", erc20Service.getContractAddress());
+                                if (debug) {
+                                    response.putAll(trace.toResponse());
+                                }
+                                return ResponseEntity.ok(response);
+                            })
+                            .exceptionally(ex -> {
+                                Map<String, String> response = new HashMap<>();
+                                response.put("error", "Transfer from failed: " + ex.getMessage());
+                                return ResponseEntity.badRequest().body(response);
+                            });
                 });
     }
 
@@ -208,20 +395,36 @@ public class ERC20Controller {
      * 铸币（需要权限）
      */
     @PostMapping("/mint")
-    public CompletableFuture<ResponseEntity<Map<String, String>>> mint(@RequestParam String value) {
+    public CompletableFuture<ResponseEntity<Map<String, String>>> mint(
+            @RequestParam String value,
+            @RequestHeader(value = TxTrace.DEBUG_HEADER, defaultValue = "false") boolean debug,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestParam(defaultValue = "false") boolean wait) {
+        TxTrace trace = txTracer.start(ERC20Dl202330550291.FUNC_MINT);
         BigInteger amount = new BigInteger(value);
-        return erc20Service.mint(amount)
-                .thenApply(receipt -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("transactionHash", receipt.getTransactionHash());
-                    response.put("mintedAmount", value);
-                    response.put("contractAddress", erc20Service.getContractAddress());
-                    return ResponseEntity.ok(response);
-                })
-                .exceptionally(ex -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("error", "Mint failed: " + ex.getMessage());
-                    return ResponseEntity.badRequest().body(response);
+        return idempotencyStore.execute(idempotencyKey, () -> "erc20 mint value=" + amount, trace,
+                        () -> CompletableFuture.completedFuture(erc20Service.mint(amount, trace)))
+                .thenCompose(ticket -> {
+                    if (!wait) {
+                        return CompletableFuture.completedFuture(accepted(ticket, trace, debug));
+                    }
+                    return ticket.receipt()
+                            .thenApply(receipt -> {
+                                Map<String, String> response = new HashMap<>();
+                                response.put("ticket", ticket.id());
+                                response.put("transactionHash", receipt.getTransactionHash());
+                                response.put("mintedAmount", value);
+                                response.put("contractAddress", erc20Service.getContractAddress());
+                                if (debug) {
+                                    response.putAll(trace.toResponse());
+                                }
+                                return ResponseEntity.ok(response);
+                            })
+                            .exceptionally(ex -> {
+                                Map<String, String> response = new HashMap<>();
+                                response.put("error", "Mint failed: " + ex.getMessage());
+                                return ResponseEntity.badRequest().body(response);
+                            });
                 });
     }
 
@@ -229,23 +432,69 @@ public class ERC20Controller {
      * 销毁代币
      */
     @PostMapping("/burn")
-    public CompletableFuture<ResponseEntity<Map<String, String>>> burn(@RequestParam String value) {
+    public CompletableFuture<ResponseEntity<Map<String, String>>> burn(
+            @RequestParam String value,
+            @RequestHeader(value = TxTrace.DEBUG_HEADER, defaultValue = "false") boolean debug,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestParam(defaultValue = "false") boolean wait) {
+        TxTrace trace = txTracer.start(ERC20Dl202330550291.FUNC_BURN);
         BigInteger amount = new BigInteger(value);
-        return erc20Service.burn(amount)
-                .thenApply(receipt -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("transactionHash", receipt.getTransactionHash());
-                    response.put("burnedAmount", value);
-                    response.put("contractAddress", erc20Service.getContractAddress());
-                    return ResponseEntity.ok(response);
-                })
-                .exceptionally(ex -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("error", "Burn failed: " + ex.getMessage());
-                    return ResponseEntity.badRequest().body(response);
+        return idempotencyStore.execute(idempotencyKey, () -> "erc20 burn value=" + amount, trace,
+                        () -> CompletableFuture.completedFuture(erc20Service.burn(amount, trace)))
+                .thenCompose(ticket -> {
+                    if (!wait) {
+                        return CompletableFuture.completedFuture(accepted(ticket, trace, debug));
+                    }
+                    return ticket.receipt()
+                            .thenApply(receipt -> {
+                                Map<String, String> response = new HashMap<>();
+                                response.put("ticket", ticket.id());
+                                response.put("transactionHash", receipt.getTransactionHash());
+                                response.put("burnedAmount", value);
+                                response.put("contractAddress", erc20Service.getContractAddress());
+                                if (debug) {
+                                    response.putAll(trace.toResponse());
+                                }
+                                return ResponseEntity.ok(response);
+                            })
+                            .exceptionally(ex -> {
+                                Map<String, String> response = new HashMap<>();
+                                response.put("error", "Burn failed: " + ex.getMessage());
+                                return ResponseEntity.badRequest().body(response);
+                            });
                 });
     }
 
+    /**
+     * 订阅 Transfer 事件流（SSE），removed=true 表示该事件因链重组被撤回
+     */
+    @GetMapping(value = "/events/transfer", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter transferEvents(@RequestParam(defaultValue = "0") int confirmations) {
+        SseEmitter emitter = new SseEmitter(0L);
+        Disposable subscription = erc20Service.transferEvents(confirmations)
+                .subscribe(event -> emitter.send(SseEmitter.event()
+                                .name(event.removed() ? "retract" : "transfer")
+                                .data(toResponse(event))),
+                        emitter::completeWithError);
+        emitter.onCompletion(subscription::dispose);
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(ex -> subscription.dispose());
+        return emitter;
+    }
+
+    private Map<String, String> toResponse(TransferEvent event) {
+        Map<String, String> response = new HashMap<>();
+        response.put("contractAddress", event.contractAddress());
+        response.put("from", event.from());
+        response.put("to", event.to());
+        response.put("value", event.value().toString());
+        response.put("transactionHash", event.transactionHash());
+        response.put("blockNumber", String.valueOf(event.blockNumber()));
+        response.put("logIndex", String.valueOf(event.logIndex()));
+        response.put("removed", String.valueOf(event.removed()));
+        return response;
+    }
+
     /**
      * 获取当前合约地址
      */
@@ -260,4 +509,12 @@ public class ERC20Controller {
         }
         return ResponseEntity.ok(response);
     }
+
+    private ResponseEntity<Map<String, String>> accepted(TxTicket ticket, TxTrace trace, boolean debug) {
+        Map<String, String> response = ticket.toResponse();
+        if (debug) {
+            response.putAll(trace.toResponse());
+        }
+        return ResponseEntity.accepted().body(response);
+    }
 }
\ No newline at end of file
@@ -1,6 +1,11 @@
 package com.wetech.demo.web3j.controller;
 
+import com.wetech.demo.web3j.contracts.simplestorage.SimpleStorage;
+import com.wetech.demo.web3j.idempotency.IdempotencyStore;
 import com.wetech.demo.web3j.service.SimpleStorageService;
+import com.wetech.demo.web3j.tx.TxTicket;
+import com.wetech.demo.web3j.tx.TxTrace;
+import com.wetech.demo.web3j.tx.TxTracer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -18,14 +23,18 @@ import java.util.concurrent.CompletableFuture;
 public class SimpleStorageController {
 
     private final SimpleStorageService storageService;
+    private final IdempotencyStore idempotencyStore;
+    private final TxTracer txTracer;
 
     /**
      * Deploy a new SimpleStorage contract
+     * @param idempotencyKey retries with the same key return the first attempt's contract
      * @return the address of the deployed contract
      */
     @PostMapping("/deploy")
-    public CompletableFuture<ResponseEntity<Map<String, String>>> deployContract() {
-        return storageService.deployContract()
+    public CompletableFuture<ResponseEntity<Map<String, String>>> deployContract(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        return idempotencyStore.execute(idempotencyKey, () -> "storage deploy", null, storageService::deployContract)
                 .thenApply(address -> {
                     Map<String, String> response = new HashMap<>();
                     response.put("contractAddress", address);
@@ -36,11 +45,17 @@ public class SimpleStorageController {
     /**
      * Load an existing contract
      * @param address the address of the contract to load
-     * @return a success message
+     * @return a success message, or an error if the address does not hold a SimpleStorage contract
      */
     @PostMapping("/load")
     public ResponseEntity<Map<String, String>> loadContract(@RequestParam String address) {
-        storageService.loadContract(address);
+        try {
+            storageService.loadContract(address);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", "Failed to load contract: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
         Map<String, String> response = new HashMap<>();
         response.put("message", "Contract loaded successfully");
         response.put("contractAddress", address);
@@ -64,21 +79,41 @@ public class SimpleStorageController {
 
     /**
      * Set a new value in the contract
-     * @param value the new value to store
-     * @return the transaction receipt details
+     * @param value          the new value to store
+     * @param debug          whether to include the per-stage transaction timings in the response
+     * @param idempotencyKey retries with the same key attach to the first attempt's transaction
+     * @param wait           whether to hold the request until the transaction is mined
+     * @return the transaction receipt details, or the outbox ticket if not waiting; coalesced sets
+     * share one ticket
      */
     @PostMapping("/value/set")
-    public CompletableFuture<ResponseEntity<Map<String, String>>> setValue(@RequestParam String value) {
+    public CompletableFuture<ResponseEntity<Map<String, String>>> setValue(
+            @RequestParam String value,
+            @RequestHeader(value = TxTrace.DEBUG_HEADER, defaultValue = "false") boolean debug,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestParam(defaultValue = "false") boolean wait) {
+        TxTrace trace = txTracer.start(SimpleStorage.FUNC_SET);
         BigInteger intValue = new BigInteger(value);
-        return storageService.setValue(intValue)
-                .thenApply(receipt -> {
-                    Map<String, String> response = new HashMap<>();
-                    response.put("transactionHash", receipt.getTransactionHash());
-                    response.put("blockNumber", receipt.getBlockNumber().toString());
-                    response.put("gasUsed", receipt.getGasUsed().toString());
-                    response.put("status", receipt.getStatus());
-                    response.put("contractAddress", storageService.getContractAddress());
-                    return ResponseEntity.ok(response);
+        return idempotencyStore.execute(idempotencyKey, () -> "storage set value=" + intValue, trace,
+                        () -> storageService.setValue(intValue, trace))
+                .thenCompose(ticket -> {
+                    if (!wait) {
+                        return CompletableFuture.completedFuture(accepted(ticket, trace, debug));
+                    }
+                    return ticket.receipt()
+                            .thenApply(receipt -> {
+                                Map<String, String> response = new HashMap<>();
+                                response.put("ticket", ticket.id());
+                                response.put("transactionHash", receipt.getTransactionHash());
+                                response.put("blockNumber", receipt.getBlockNumber().toString());
+                                response.put("gasUsed", receipt.getGasUsed().toString());
+                                response.put("status", receipt.getStatus());
+                                response.put("contractAddress", storageService.getContractAddress());
+                                if (debug) {
+                                    response.putAll(trace.toResponse());
+                                }
+                                return ResponseEntity.ok(response);
+                            });
                 });
     }
 
@@ -98,4 +133,12 @@ public class SimpleStorageController {
             return ResponseEntity.ok(response);
         }
     }
+
+    private ResponseEntity<Map<String, String>> accepted(TxTicket ticket, TxTrace trace, boolean debug) {
+        Map<String, String> response = ticket.toResponse();
+        if (debug) {
+            response.putAll(trace.toResponse());
+        }
+        return ResponseEntity.accepted().body(response);
+    }
 }
\ No newline at end of file
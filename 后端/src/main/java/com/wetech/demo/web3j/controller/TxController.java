@@ -0,0 +1,34 @@
+package com.wetech.demo.web3j.controller;
+
+import com.wetech.demo.web3j.tx.TxOutbox;
+import com.wetech.demo.web3j.tx.TxTrace;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/tx")
+@RequiredArgsConstructor
+public class TxController {
+
+    private final TxOutbox outbox;
+
+    /**
+     * Get the state of a write accepted into the outbox
+     * @param ticket the ticket returned by the write endpoint
+     * @param debug  whether to include the per-stage transaction timings in the response
+     * @return the status, plus the transaction hash and receipt details once known
+     */
+    @GetMapping("/{ticket}")
+    public ResponseEntity<Map<String, String>> status(
+            @PathVariable String ticket,
+            @RequestHeader(value = TxTrace.DEBUG_HEADER, defaultValue = "false") boolean debug) {
+        return outbox.status(ticket, debug)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "Unknown ticket: " + ticket)));
+    }
+}
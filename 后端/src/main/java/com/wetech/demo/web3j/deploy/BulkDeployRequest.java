@@ -0,0 +1,19 @@
+package com.wetech.demo.web3j.deploy;
+
+import java.util.List;
+
+/**
+ * Body of {@code POST /api/contracts/deploy}
+ * @param contracts the contracts to deploy, in order
+ * @param create2   whether to deploy through the CREATE2 factory, so addresses depend only on
+ *                  the creation code and salt instead of the sender's nonce
+ */
+public record BulkDeployRequest(List<Item> contracts, boolean create2) {
+
+    /**
+     * @param type the wrapper class name, e.g. {@code ERC20Dl202330550291}
+     * @param salt the 32-byte hex CREATE2 salt, random if omitted; ignored without {@code create2}
+     */
+    public record Item(String type, String salt) {
+    }
+}
@@ -0,0 +1,158 @@
+package com.wetech.demo.web3j.deploy;
+
+import com.wetech.demo.web3j.admission.AdmissionScheduler;
+import com.wetech.demo.web3j.admission.WorkClass;
+import com.wetech.demo.web3j.registry.ContractCodeVerifier;
+import com.wetech.demo.web3j.registry.ContractRecord;
+import com.wetech.demo.web3j.registry.ContractRegistry;
+import com.wetech.demo.web3j.tx.SenderAccount;
+import com.wetech.demo.web3j.tx.SenderPool;
+import com.wetech.demo.web3j.tx.SignedTransaction;
+import com.wetech.demo.web3j.tx.TransactionSubmitter;
+import com.wetech.demo.web3j.tx.TxTrace;
+import com.wetech.demo.web3j.tx.TxTracer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.crypto.ContractUtils;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.tx.Contract;
+import org.web3j.utils.Async;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Deploys many contracts at once. Nonces for the whole batch are reserved up front, so every
+ * contract address is known before anything is sent; the deployments are then broadcast back
+ * to back and mined together instead of one block each.
+ * <p>
+ * With {@code create2}, deployments go through the deterministic deployment proxy at
+ * {@code web3j.deploy.create2-factory} and each address depends only on the creation code and
+ * a salt, so it is the same on every chain and independent of the sender's nonce.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkDeployer {
+
+    private static final int SALT_BYTES = 32;
+
+    private final Web3j web3j;
+    private final SenderPool senderPool;
+    private final TransactionSubmitter transactionSubmitter;
+    private final AdmissionScheduler admissionScheduler;
+    private final ContractRegistry registry;
+    private final ContractCodeVerifier codeVerifier;
+    private final TxTracer txTracer;
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${web3j.deploy.max-contracts:200}")
+    private int maxContracts;
+
+    @Value("${web3j.deploy.create2-factory:0x4e59b44847b379578588920ca78fbf26c0b4956c}")
+    private String create2Factory;
+
+    /**
+     * @throws IllegalArgumentException if the request is empty, too large or names an unknown type
+     */
+    public void validate(BulkDeployRequest request) {
+        if (request.contracts() == null || request.contracts().isEmpty()) {
+            throw new IllegalArgumentException("contracts must not be empty");
+        }
+        if (request.contracts().size() > maxContracts) {
+            throw new IllegalArgumentException("At most " + maxContracts + " contracts per request");
+        }
+        for (BulkDeployRequest.Item item : request.contracts()) {
+            DeployableContract type = DeployableContract.of(item.type());
+            if (!request.create2()) {
+                continue;
+            }
+            if (type.isOwned()) {
+                throw new IllegalArgumentException(type.getTypeName()
+                        + " makes its deployer the owner and cannot be deployed through the CREATE2 factory");
+            }
+            if (item.salt() != null && Numeric.hexStringToByteArray(item.salt()).length != SALT_BYTES) {
+                throw new IllegalArgumentException("salt must be 32 bytes of hex: " + item.salt());
+            }
+        }
+    }
+
+    /**
+     * Deploy the requested contracts from the primary sender
+     * @param request the contracts
+     * @return the deployments, completed once every transaction has been handed to the node;
+     * each deployment's receipt completes when it is mined
+     */
+    public CompletableFuture<List<Deployment>> deploy(BulkDeployRequest request) {
+        validate(request);
+        return admissionScheduler.submit(WorkClass.ADMIN, () -> Async.run(() -> send(request)));
+    }
+
+    private List<Deployment> send(BulkDeployRequest request) throws IOException {
+        if (request.create2()) {
+            String code = web3j.ethGetCode(create2Factory, DefaultBlockParameterName.LATEST).send().getCode();
+            if (code == null || code.equals("0x")) {
+                throw new IllegalStateException("No CREATE2 factory deployed at " + create2Factory);
+            }
+        }
+        SenderAccount sender = senderPool.primary();
+        List<DeployableContract> types = new ArrayList<>();
+        List<String> salts = new ArrayList<>();
+        List<TransactionSubmitter.Call> calls = new ArrayList<>();
+        List<TxTrace> traces = new ArrayList<>();
+        for (BulkDeployRequest.Item item : request.contracts()) {
+            DeployableContract type = DeployableContract.of(item.type());
+            types.add(type);
+            traces.add(txTracer.start(Contract.FUNC_DEPLOY));
+            if (request.create2()) {
+                byte[] salt = new byte[SALT_BYTES];
+                if (item.salt() == null) {
+                    random.nextBytes(salt);
+                } else {
+                    salt = Numeric.hexStringToByteArray(item.salt());
+                }
+                salts.add(Numeric.toHexString(salt));
+                calls.add(new TransactionSubmitter.Call(create2Factory,
+                        Numeric.toHexString(salt) + Numeric.cleanHexPrefix(type.getBinary())));
+            } else {
+                salts.add(null);
+                calls.add(new TransactionSubmitter.Call(null, type.getBinary()));
+            }
+        }
+
+        List<SignedTransaction> signed = transactionSubmitter.prepare(sender, calls, traces);
+        List<String> addresses = new ArrayList<>(signed.size());
+        for (int index = 0; index < signed.size(); index++) {
+            addresses.add(request.create2()
+                    ? ContractUtils.generateCreate2ContractAddress(create2Factory,
+                    Numeric.hexStringToByteArray(salts.get(index)),
+                    Numeric.hexStringToByteArray(types.get(index).getBinary()))
+                    : ContractUtils.generateContractAddress(sender.getAddress(), signed.get(index).nonce()));
+        }
+        List<CompletableFuture<TransactionReceipt>> receipts = transactionSubmitter.sendAll(sender, signed, traces);
+
+        List<Deployment> deployments = new ArrayList<>(signed.size());
+        for (int index = 0; index < signed.size(); index++) {
+            DeployableContract type = types.get(index);
+            String address = addresses.get(index);
+            CompletableFuture<TransactionReceipt> receipt = receipts.get(index).thenApply(mined -> {
+                codeVerifier.remember(address, type.getBinary());
+                registry.register(type.getTypeName(), type.getBinary(), address, mined.getBlockNumber(),
+                        ContractRecord.Source.DEPLOYED, false);
+                return mined;
+            });
+            deployments.add(new Deployment(type, address, salts.get(index), signed.get(index), receipt));
+        }
+        log.info("Sending {} contract deployments from {} starting at nonce {}",
+                signed.size(), sender.getAddress(), signed.get(0).nonce());
+        return deployments;
+    }
+}
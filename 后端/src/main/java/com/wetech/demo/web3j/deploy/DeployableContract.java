@@ -0,0 +1,42 @@
+package com.wetech.demo.web3j.deploy;
+
+import com.wetech.demo.web3j.contracts.erc20dl202330550291.ERC20Dl202330550291;
+import com.wetech.demo.web3j.contracts.erc20yfp202330552031.ERC20YFP202330552031;
+import com.wetech.demo.web3j.contracts.simplestorage.SimpleStorage;
+import com.wetech.demo.web3j.contracts.ygtoken.YGToken;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+
+/**
+ * Contract wrappers that can be deployed in bulk. None of them takes constructor arguments.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum DeployableContract {
+
+    ERC20_DL(ERC20Dl202330550291.class.getSimpleName(), ERC20Dl202330550291.BINARY, false),
+    ERC20_YFP(ERC20YFP202330552031.class.getSimpleName(), ERC20YFP202330552031.BINARY, true),
+    YG_TOKEN(YGToken.class.getSimpleName(), YGToken.BINARY, true),
+    SIMPLE_STORAGE(SimpleStorage.class.getSimpleName(), SimpleStorage.BINARY, false);
+
+    /** The wrapper class name, as used in requests and the contract registry */
+    private final String typeName;
+    private final String binary;
+    /** Whether the deployer becomes the owner, so deploying through a CREATE2 factory would lock it out */
+    private final boolean owned;
+
+    /**
+     * @param typeName the wrapper class name, e.g. {@code SimpleStorage}
+     * @return the contract type
+     * @throws IllegalArgumentException if the type is unknown
+     */
+    public static DeployableContract of(String typeName) {
+        return Arrays.stream(values())
+                .filter(contract -> contract.typeName.equals(typeName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown contract type: " + typeName
+                        + ", expected one of " + Arrays.stream(values()).map(DeployableContract::getTypeName).toList()));
+    }
+}
@@ -0,0 +1,49 @@
+package com.wetech.demo.web3j.deploy;
+
+import com.wetech.demo.web3j.tx.SignedTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * One contract of a bulk deployment, with its address known before it is mined
+ * @param type        the contract type
+ * @param address     the precomputed contract address
+ * @param salt        the CREATE2 salt, {@code null} for a plain contract creation
+ * @param transaction the signed deployment transaction
+ * @param receipt     completed once the deployment is mined, exceptionally if it failed
+ */
+public record Deployment(DeployableContract type, String address, String salt, SignedTransaction transaction,
+                         CompletableFuture<TransactionReceipt> receipt) {
+
+    public Map<String, String> toResponse() {
+        Map<String, String> response = new LinkedHashMap<>();
+        response.put("type", type.getTypeName());
+        response.put("contractAddress", address);
+        response.put("nonce", transaction.nonce().toString());
+        response.put("transactionHash", transaction.hash());
+        if (salt != null) {
+            response.put("salt", salt);
+        }
+        if (!receipt.isDone()) {
+            response.put("status", "PENDING");
+        } else if (receipt.isCompletedExceptionally()) {
+            response.put("status", "FAILED");
+            try {
+                receipt.join();
+            } catch (CompletionException e) {
+                response.put("error", String.valueOf(e.getCause().getMessage()));
+            }
+        } else {
+            TransactionReceipt mined = receipt.join();
+            response.put("status", "DEPLOYED");
+            response.put("transactionHash", mined.getTransactionHash());
+            response.put("blockNumber", mined.getBlockNumber().toString());
+            response.put("gasUsed", mined.getGasUsed().toString());
+        }
+        return response;
+    }
+}
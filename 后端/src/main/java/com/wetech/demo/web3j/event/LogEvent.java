@@ -0,0 +1,28 @@
+package com.wetech.demo.web3j.event;
+
+import org.web3j.protocol.core.methods.response.Log;
+
+/**
+ * A contract log delivered by the {@link ReorgAwareLogPipeline}.
+ * <p>
+ * {@code removed == true} marks a retraction: the log was previously delivered
+ * but its block has been orphaned by a chain reorganization, so consumers must
+ * undo whatever they derived from it.
+ *
+ * @param log     the raw log as returned by the node
+ * @param removed whether this event retracts a previously delivered log
+ */
+public record LogEvent(Log log, boolean removed) {
+
+    public long blockNumber() {
+        return log.getBlockNumber().longValue();
+    }
+
+    public String blockHash() {
+        return log.getBlockHash();
+    }
+
+    public String address() {
+        return log.getAddress();
+    }
+}
@@ -0,0 +1,74 @@
+package com.wetech.demo.web3j.event;
+
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.util.List;
+
+/**
+ * Tests a block's 2048-bit {@code logsBloom} for a contract and a set of event signatures. The
+ * bloom has false positives but no false negatives: a block it rules out has no matching log.
+ */
+public final class LogsBloom {
+
+    private static final int BLOOM_BYTES = 256;
+
+    /** Per value, the three bits it sets, as byte index and mask */
+    private final int[][] addressBits;
+    private final int[][][] topicBits;
+
+    /**
+     * @param address the contract address
+     * @param topics  the event signature hashes, a block matches if it may contain any of them
+     */
+    public LogsBloom(String address, List<String> topics) {
+        this.addressBits = bits(address);
+        this.topicBits = topics.stream().map(LogsBloom::bits).toArray(int[][][]::new);
+    }
+
+    /**
+     * @param logsBloom the hex-encoded {@code logsBloom} of a block header
+     * @return whether the block may contain a log of the contract with one of the topics
+     */
+    public boolean mightMatch(String logsBloom) {
+        if (logsBloom == null) {
+            // a node without blooms: nothing can be ruled out
+            return true;
+        }
+        byte[] bloom = Numeric.hexStringToByteArray(logsBloom);
+        if (bloom.length != BLOOM_BYTES) {
+            return true;
+        }
+        if (!contains(bloom, addressBits)) {
+            return false;
+        }
+        for (int[][] bits : topicBits) {
+            if (contains(bloom, bits)) {
+                return true;
+            }
+        }
+        return topicBits.length == 0;
+    }
+
+    private static boolean contains(byte[] bloom, int[][] bits) {
+        for (int[] bit : bits) {
+            if ((bloom[bit[0]] & bit[1]) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The low 11 bits of the first three byte pairs of the keccak-256 hash of the value
+     */
+    private static int[][] bits(String hex) {
+        byte[] hash = Hash.sha3(Numeric.hexStringToByteArray(hex));
+        int[][] bits = new int[3][];
+        for (int i = 0; i < 3; i++) {
+            int bit = ((hash[2 * i] & 0x07) << 8) | (hash[2 * i + 1] & 0xff);
+            bits[i] = new int[]{BLOOM_BYTES - 1 - (bit >> 3), 1 << (bit & 0x07)};
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,314 @@
+package com.wetech.demo.web3j.event;
+
+import io.reactivex.Flowable;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Polls the chain head, keeps the hashes of the last {@code web3j.events.window-size}
+ * canonical blocks and delivers contract logs to subscribers.
+ * <p>
+ * Every new block is checked against the parent hash recorded for its predecessor.
+ * On a mismatch the pipeline walks back to the common ancestor, emits retractions
+ * ({@link LogEvent#removed()}) for logs of the orphaned blocks and then replays the
+ * new canonical branch; {@link #reorgs()} reports each common ancestor in between, for
+ * consumers that derived state from orphaned blocks other than through their logs. Each subscriber picks its own confirmation depth:
+ * {@code 0} follows the head (and therefore sees retractions), {@code N} only
+ * receives logs once {@code N} blocks have been built on top of them.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReorgAwareLogPipeline {
+
+    private final Web3j web3j;
+
+    @Value("${web3j.events.window-size:64}")
+    private int windowSize;
+
+    @Value("${web3j.events.max-blocks-per-poll:32}")
+    private int maxBlocksPerPoll;
+
+    /** Canonical blocks observed so far, keyed by block number. */
+    private final NavigableMap<Long, TrackedBlock> window = new TreeMap<>();
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final FlowableProcessor<Long> reorgs = PublishProcessor.<Long>create().toSerialized();
+
+    /** When the head was last polled without error, epoch milliseconds */
+    private volatile long lastPolledAt;
+
+    /**
+     * Subscribe to the logs of a contract
+     * @param address       the contract address
+     * @param topic0        the event signature hash to filter on, or {@code null} for all events
+     * @param confirmations how many blocks must be built on top of a log before it is delivered
+     * @return a stream of logs and retractions
+     */
+    public Flowable<LogEvent> subscribe(String address, String topic0, int confirmations) {
+        if (confirmations < 0 || confirmations >= windowSize) {
+            throw new IllegalArgumentException(
+                    "confirmations must be between 0 and " + (windowSize - 1) + ": " + confirmations);
+        }
+        Subscription subscription = new Subscription(address, topic0, confirmations);
+        synchronized (this) {
+            // logs already in the window were fetched without this address, so start at the tip
+            subscription.emittedThrough = window.isEmpty() ? -1 : window.lastKey();
+            subscriptions.add(subscription);
+        }
+        log.debug("Subscribed to logs of {} with {} confirmations", address, confirmations);
+        return subscription.processor
+                .onBackpressureBuffer()
+                .doOnCancel(() -> subscriptions.remove(subscription));
+    }
+
+    /**
+     * @return the common ancestor of every reorganization, emitted after the retractions and
+     * before the logs of the new branch; everything above it, up to the previous tip, was orphaned
+     */
+    public Flowable<Long> reorgs() {
+        return reorgs.onBackpressureBuffer();
+    }
+
+    /**
+     * @return the newest canonical block, whose logs have been delivered to every subscriber
+     * without confirmations; {@code -1} before the first block
+     */
+    public synchronized long tip() {
+        return window.isEmpty() ? -1 : window.lastKey();
+    }
+
+    /**
+     * @return when the head was last polled without error, in epoch milliseconds; {@code 0} if never
+     */
+    public long lastPolledAt() {
+        return lastPolledAt;
+    }
+
+    @Scheduled(fixedDelayString = "${web3j.events.poll-interval-ms:2000}")
+    public void poll() {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        try {
+            advance();
+            lastPolledAt = System.currentTimeMillis();
+        } catch (Exception e) {
+            log.warn("Event pipeline poll failed: {}", e.getMessage());
+        }
+    }
+
+    synchronized void advance() throws IOException {
+        long head = web3j.ethBlockNumber().send().getBlockNumber().longValue();
+        long from = window.isEmpty() ? head : window.lastKey() + 1;
+        long to = Math.min(head, from + maxBlocksPerPoll - 1);
+        if (from > to) {
+            return;
+        }
+
+        List<EthBlock.Block> headers = new ArrayList<>();
+        for (long number = from; number <= to; number++) {
+            headers.add(fetchBlock(DefaultBlockParameter.valueOf(BigInteger.valueOf(number))));
+        }
+        Map<String, List<Log>> logsByBlock = fetchLogs(from, to);
+        for (String blockHash : logsByBlock.keySet()) {
+            if (headers.stream().noneMatch(header -> header.getHash().equals(blockHash))) {
+                // the node switched forks between the header and log queries, retry on the next poll
+                log.debug("Logs reference unknown block {}, retrying", blockHash);
+                return;
+            }
+        }
+
+        for (EthBlock.Block header : headers) {
+            TrackedBlock tip = window.isEmpty() ? null : window.lastEntry().getValue();
+            if (tip != null && !tip.hash().equals(header.getParentHash())) {
+                reorganize(header);
+                return;
+            }
+            append(header, logsByBlock.getOrDefault(header.getHash(), List.of()));
+        }
+    }
+
+    /**
+     * Walk back from a block whose parent is not our tip until the common ancestor,
+     * retract everything above it and adopt the new branch.
+     */
+    private void reorganize(EthBlock.Block newBlock) throws IOException {
+        Deque<EthBlock.Block> branch = new ArrayDeque<>();
+        branch.push(newBlock);
+        EthBlock.Block cursor = newBlock;
+        while (true) {
+            TrackedBlock known = window.get(cursor.getNumber().longValue() - 1);
+            if (known == null) {
+                log.warn("Reorg at block {} is deeper than the {} block window, resetting",
+                        newBlock.getNumber(), windowSize);
+                retractAbove(window.firstKey() - 1);
+                break;
+            }
+            if (known.hash().equals(cursor.getParentHash())) {
+                retractAbove(known.number());
+                break;
+            }
+            cursor = fetchBlockByHash(cursor.getParentHash());
+            branch.push(cursor);
+        }
+        log.info("Chain reorganization: adopting {} block(s) ending at {} ({})",
+                branch.size(), newBlock.getNumber(), newBlock.getHash());
+        for (EthBlock.Block block : branch) {
+            append(block, fetchLogs(block.getHash()));
+        }
+    }
+
+    private void append(EthBlock.Block block, List<Log> logs) {
+        long number = block.getNumber().longValue();
+        window.put(number, new TrackedBlock(number, block.getHash(), logs));
+        for (Subscription subscription : subscriptions) {
+            if (subscription.emittedThrough < 0) {
+                subscription.emittedThrough = window.firstKey() - 1;
+            }
+            long threshold = number - subscription.confirmations;
+            if (threshold > subscription.emittedThrough) {
+                for (TrackedBlock confirmed : window.subMap(subscription.emittedThrough, false, threshold, true).values()) {
+                    subscription.emit(confirmed.logs(), false);
+                }
+                subscription.emittedThrough = threshold;
+            }
+        }
+        while (window.size() > windowSize) {
+            window.pollFirstEntry();
+        }
+    }
+
+    private void retractAbove(long ancestor) {
+        NavigableMap<Long, TrackedBlock> orphaned = window.tailMap(ancestor, false);
+        for (Subscription subscription : subscriptions) {
+            if (subscription.emittedThrough <= ancestor) {
+                continue;
+            }
+            if (subscription.confirmations > 0) {
+                log.warn("Reorg orphaned blocks delivered with {} confirmations to subscriber of {}",
+                        subscription.confirmations, subscription.address);
+            }
+            for (TrackedBlock block : orphaned.descendingMap().values()) {
+                if (block.number() <= subscription.emittedThrough) {
+                    List<Log> reversed = new ArrayList<>(block.logs());
+                    Collections.reverse(reversed);
+                    subscription.emit(reversed, true);
+                }
+            }
+            subscription.emittedThrough = ancestor;
+        }
+        orphaned.clear();
+        reorgs.onNext(ancestor);
+    }
+
+    private List<String> trackedAddresses() {
+        return subscriptions.stream().map(subscription -> subscription.address).distinct().toList();
+    }
+
+    private Map<String, List<Log>> fetchLogs(long from, long to) throws IOException {
+        List<String> addresses = trackedAddresses();
+        Map<String, List<Log>> logsByBlock = new HashMap<>();
+        if (addresses.isEmpty()) {
+            return logsByBlock;
+        }
+        EthFilter filter = new EthFilter(
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(from)),
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(to)),
+                addresses);
+        for (Log entry : sendLogRequest(filter)) {
+            logsByBlock.computeIfAbsent(entry.getBlockHash(), hash -> new ArrayList<>()).add(entry);
+        }
+        return logsByBlock;
+    }
+
+    private List<Log> fetchLogs(String blockHash) throws IOException {
+        List<Log> logs = new ArrayList<>();
+        for (String address : trackedAddresses()) {
+            logs.addAll(sendLogRequest(new EthFilter(blockHash, address)));
+        }
+        logs.sort(Comparator.comparing(Log::getLogIndex));
+        return logs;
+    }
+
+    private List<Log> sendLogRequest(EthFilter filter) throws IOException {
+        EthLog response = web3j.ethGetLogs(filter).send();
+        if (response.hasError()) {
+            throw new IOException("eth_getLogs failed: " + response.getError().getMessage());
+        }
+        List<Log> logs = new ArrayList<>();
+        for (EthLog.LogResult<?> result : response.getLogs()) {
+            logs.add((Log) result.get());
+        }
+        return logs;
+    }
+
+    private EthBlock.Block fetchBlock(DefaultBlockParameter number) throws IOException {
+        EthBlock.Block block = web3j.ethGetBlockByNumber(number, false).send().getBlock();
+        if (block == null) {
+            throw new IOException("Block not found: " + number.getValue());
+        }
+        return block;
+    }
+
+    private EthBlock.Block fetchBlockByHash(String hash) throws IOException {
+        EthBlock.Block block = web3j.ethGetBlockByHash(hash, false).send().getBlock();
+        if (block == null) {
+            throw new IOException("Block not found: " + hash);
+        }
+        return block;
+    }
+
+    private record TrackedBlock(long number, String hash, List<Log> logs) {
+    }
+
+    private static final class Subscription {
+
+        private final String address;
+        private final String topic0;
+        private final int confirmations;
+        private final FlowableProcessor<LogEvent> processor = PublishProcessor.<LogEvent>create().toSerialized();
+
+        /** Highest block number whose logs have been delivered, -1 before the first block. */
+        private long emittedThrough;
+
+        private Subscription(String address, String topic0, int confirmations) {
+            this.address = address;
+            this.topic0 = topic0;
+            this.confirmations = confirmations;
+        }
+
+        private void emit(List<Log> logs, boolean removed) {
+            for (Log entry : logs) {
+                if (matches(entry)) {
+                    processor.onNext(new LogEvent(entry, removed));
+                }
+            }
+        }
+
+        private boolean matches(Log entry) {
+            if (!address.equalsIgnoreCase(entry.getAddress())) {
+                return false;
+            }
+            return topic0 == null
+                    || (!entry.getTopics().isEmpty() && topic0.equalsIgnoreCase(entry.getTopics().get(0)));
+        }
+    }
+}
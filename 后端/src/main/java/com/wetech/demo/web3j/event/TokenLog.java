@@ -0,0 +1,19 @@
+package com.wetech.demo.web3j.event;
+
+import com.wetech.demo.web3j.address.Address20;
+
+import java.math.BigInteger;
+
+/**
+ * A {@code Transfer} or {@code Approval} log as decoded by {@link TokenLogDecoder}
+ * @param kind        which event it is
+ * @param blockNumber the block of the log
+ * @param logIndex    the position of the log in its block
+ * @param from        the sender, or the owner of an approval
+ * @param to          the recipient, or the spender of an approval
+ * @param value       the amount transferred or approved
+ */
+public record TokenLog(Kind kind, long blockNumber, long logIndex, Address20 from, Address20 to, BigInteger value) {
+
+    public enum Kind { TRANSFER, APPROVAL }
+}
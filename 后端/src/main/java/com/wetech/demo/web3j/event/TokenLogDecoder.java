@@ -0,0 +1,111 @@
+package com.wetech.demo.web3j.event;
+
+import com.wetech.demo.web3j.address.Address20;
+import com.wetech.demo.web3j.contracts.erc20dl202330550291.ERC20Dl202330550291;
+import org.web3j.abi.EventEncoder;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Decodes ERC20 {@code Transfer} and {@code Approval} logs straight from their hex strings.
+ * Both events carry two indexed addresses in topics 1 and 2 and one {@code uint256} in
+ * {@code data}, so the addresses are read straight from the topics and the amount is parsed in
+ * place, without the ABI type objects the generated wrappers' {@code getTransferEventFromLog}
+ * builds for every log. The same layout is shared by {@code ERC20YFP202330552031} and
+ * {@code YGToken}.
+ */
+public final class TokenLogDecoder {
+
+    public static final String TRANSFER_TOPIC = EventEncoder.encode(ERC20Dl202330550291.TRANSFER_EVENT);
+    public static final String APPROVAL_TOPIC = EventEncoder.encode(ERC20Dl202330550291.APPROVAL_EVENT);
+
+    private static final int WORD_DIGITS = 64;
+
+    private TokenLogDecoder() {
+    }
+
+    /**
+     * @return the decoded log, or {@code null} if it is neither a {@code Transfer} nor an
+     * {@code Approval} with two indexed addresses
+     * @throws IllegalArgumentException if the topics or data are malformed
+     */
+    public static TokenLog decode(Log log) {
+        List<String> topics = log.getTopics();
+        if (topics == null || topics.size() != 3) {
+            return null;
+        }
+        TokenLog.Kind kind;
+        if (TRANSFER_TOPIC.equalsIgnoreCase(topics.get(0))) {
+            kind = TokenLog.Kind.TRANSFER;
+        } else if (APPROVAL_TOPIC.equalsIgnoreCase(topics.get(0))) {
+            kind = TokenLog.Kind.APPROVAL;
+        } else {
+            return null;
+        }
+        return new TokenLog(kind, quantity(log.getBlockNumberRaw()), quantity(log.getLogIndexRaw()),
+                Address20.fromTopic(topics.get(1)), Address20.fromTopic(topics.get(2)), uint256(log.getData()));
+    }
+
+    /**
+     * Parse the first 32-byte word of {@code data} as an unsigned integer
+     */
+    static BigInteger uint256(String data) {
+        if (data == null || data.length() < 2 + WORD_DIGITS) {
+            throw new IllegalArgumentException("Missing uint256 in log data: " + data);
+        }
+        int end = 2 + WORD_DIGITS;
+        int first = 2;
+        while (first < end && data.charAt(first) == '0') {
+            first++;
+        }
+        if (end - first < 16) {
+            // fits in a non-negative long
+            long value = 0;
+            for (int i = first; i < end; i++) {
+                value = value << 4 | digit(data, i);
+            }
+            return BigInteger.valueOf(value);
+        }
+        byte[] magnitude = new byte[(end - first + 1) / 2];
+        int position = end;
+        for (int i = magnitude.length - 1; i >= 0; i--) {
+            int low = digit(data, --position);
+            int high = position > first ? digit(data, --position) : 0;
+            magnitude[i] = (byte) (high << 4 | low);
+        }
+        return new BigInteger(1, magnitude);
+    }
+
+    /**
+     * Parse a {@code 0x}-prefixed hex quantity such as a block number
+     */
+    static long quantity(String hex) {
+        if (hex == null || hex.length() < 3 || hex.length() > 18) {
+            throw new IllegalArgumentException("Invalid quantity: " + hex);
+        }
+        long value = 0;
+        for (int i = 2; i < hex.length(); i++) {
+            value = value << 4 | digit(hex, i);
+        }
+        return value;
+    }
+
+    /**
+     * @throws IllegalArgumentException unless the character is an ASCII hex digit
+     */
+    private static int digit(String hex, int index) {
+        char c = hex.charAt(index);
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        throw new IllegalArgumentException("Invalid hex digit in " + hex);
+    }
+}
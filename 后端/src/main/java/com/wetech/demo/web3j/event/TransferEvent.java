@@ -0,0 +1,36 @@
+package com.wetech.demo.web3j.event;
+
+import java.math.BigInteger;
+
+/**
+ * A decoded ERC20 {@code Transfer} log, or the retraction of one.
+ */
+public record TransferEvent(
+        String contractAddress,
+        String from,
+        String to,
+        BigInteger value,
+        String transactionHash,
+        long blockNumber,
+        long logIndex,
+        boolean removed) {
+
+    /**
+     * @throws IllegalArgumentException if the log is not a {@code Transfer}
+     */
+    public static TransferEvent of(LogEvent event) {
+        TokenLog decoded = TokenLogDecoder.decode(event.log());
+        if (decoded == null || decoded.kind() != TokenLog.Kind.TRANSFER) {
+            throw new IllegalArgumentException("Not a Transfer log: " + event.log().getTopics());
+        }
+        return new TransferEvent(
+                event.address(),
+                decoded.from().toString(),
+                decoded.to().toString(),
+                decoded.value(),
+                event.log().getTransactionHash(),
+                decoded.blockNumber(),
+                decoded.logIndex(),
+                event.removed());
+    }
+}
@@ -0,0 +1,22 @@
+package com.wetech.demo.web3j.idempotency;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestControllerAdvice
+public class IdempotencyExceptionHandler {
+
+    /**
+     * Reject a malformed or reused idempotency key without running the request
+     */
+    @ExceptionHandler(IdempotencyKeyException.class)
+    public ResponseEntity<Map<String, String>> rejected(IdempotencyKeyException e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", e.getMessage());
+        return ResponseEntity.status(e.getStatus()).body(response);
+    }
+}
@@ -0,0 +1,21 @@
+package com.wetech.demo.web3j.idempotency;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when an {@code Idempotency-Key} is malformed ({@code 400 Bad Request}) or was already
+ * used for a different request ({@code 422 Unprocessable Entity}).
+ */
+public class IdempotencyKeyException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    public IdempotencyKeyException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
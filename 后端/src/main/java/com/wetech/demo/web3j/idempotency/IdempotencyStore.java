@@ -0,0 +1,186 @@
+package com.wetech.demo.web3j.idempotency;
+
+import com.wetech.demo.web3j.tx.TxOutbox;
+import com.wetech.demo.web3j.tx.TxTrace;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Results of writes by {@code Idempotency-Key}, so a retried request attaches to the write its
+ * first attempt started, whether that is still in flight or long done, instead of sending a
+ * second transaction.
+ * <p>
+ * A key is bound to the request it was first used with; reusing it for another request is
+ * rejected. A write that fails before it is queued, e.g. because admission control shed it,
+ * releases its key so the retry runs. Keys expire after {@code web3j.idempotency.ttl-ms}, and
+ * the oldest are evicted beyond {@code web3j.idempotency.max-keys}.
+ * <p>
+ * The keys themselves are only held in memory. Writes that go through the {@link TxOutbox} log
+ * their keys with the write, so after a restart a retry still finds its ticket for as long as
+ * the outbox retains the write. Deployments do not go through the outbox; a retried deployment
+ * after a restart deploys again.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyStore {
+
+    /** Request header carrying the client's idempotency key. */
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final MeterRegistry meterRegistry;
+    private final TxOutbox outbox;
+
+    @Value("${web3j.idempotency.ttl-ms:86400000}")
+    private long ttlMs;
+
+    @Value("${web3j.idempotency.max-keys:100000}")
+    private int maxKeys;
+
+    /** In insertion order, which is also expiry order; guarded by itself */
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Run a write once per key
+     * @param key     the client's idempotency key, {@code null} to always run the write
+     * @param request describes what the write does, e.g. the endpoint and its parsed parameters, so
+     *                a retry spelling them differently still matches; only built when a key is given,
+     *                an {@code IllegalArgumentException} from it rejects the request as malformed
+     * @param trace   the trace started for this attempt, finished right away if it is a retry
+     * @param write   starts the write
+     * @return the result of the write, shared by every attempt with the key
+     * @throws IdempotencyKeyException if the key or the request is malformed, or the key was used for another request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> execute(String key, Supplier<String> request, TxTrace trace,
+                                            Supplier<CompletableFuture<T>> write) {
+        if (key == null) {
+            return write.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw rejected(trace, new IdempotencyKeyException(HttpStatus.BAD_REQUEST,
+                    HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters"));
+        }
+        String fingerprint;
+        try {
+            fingerprint = request.get();
+        } catch (IllegalArgumentException e) {
+            throw rejected(trace, new IdempotencyKeyException(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+        Entry entry;
+        synchronized (entries) {
+            long now = System.currentTimeMillis();
+            evict(now);
+            Entry existing = entries.get(key);
+            if (existing == null || existing.expiresAt <= now) {
+                existing = recover(key, now);
+            }
+            if (existing != null) {
+                if (!existing.request.equals(fingerprint)) {
+                    count("conflict");
+                    throw rejected(trace, new IdempotencyKeyException(HttpStatus.UNPROCESSABLE_ENTITY,
+                            HEADER + " " + key + " was already used for another request"));
+                }
+                count("replayed");
+                if (trace != null) {
+                    trace.finish(null);
+                }
+                log.debug("Attaching retry of {} to the write of key {}", fingerprint, key);
+                return (CompletableFuture<T>) existing.result;
+            }
+            entry = new Entry(fingerprint, now + ttlMs);
+            entries.put(key, entry);
+        }
+        count("first");
+        if (trace != null) {
+            trace.idempotencyKey(key, fingerprint);
+        }
+        CompletableFuture<T> result;
+        try {
+            result = write.get();
+        } catch (RuntimeException e) {
+            release(key, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+        result.whenComplete((value, ex) -> {
+            if (ex != null) {
+                release(key, entry);
+                entry.result.completeExceptionally(ex);
+            } else {
+                entry.result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Look a key up in the outbox, e.g. after a restart emptied the store; callers hold the entries lock
+     * @return the key's entry, {@code null} if the outbox has no unexpired write with it
+     */
+    private Entry recover(String key, long now) {
+        entries.remove(key);
+        return outbox.findByIdempotencyKey(key)
+                .filter(write -> write.createdAt() + ttlMs > now)
+                .map(write -> {
+                    Entry recovered = new Entry(write.request(), write.createdAt() + ttlMs);
+                    recovered.result.complete(write.ticket());
+                    entries.put(key, recovered);
+                    return recovered;
+                })
+                .orElse(null);
+    }
+
+    private static IdempotencyKeyException rejected(TxTrace trace, IdempotencyKeyException e) {
+        if (trace != null) {
+            trace.finish(e);
+        }
+        return e;
+    }
+
+    private void release(String key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    private void evict(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.expiresAt > now && entries.size() < maxKeys) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("idempotency.requests", "outcome", outcome).increment();
+    }
+
+    private static final class Entry {
+
+        private final String request;
+        private final long expiresAt;
+        /** Completed with the first attempt's result; retries in flight share its failure too */
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Entry(String request, long expiresAt) {
+            this.request = request;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
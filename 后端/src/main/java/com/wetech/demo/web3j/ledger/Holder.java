@@ -0,0 +1,11 @@
+package com.wetech.demo.web3j.ledger;
+
+import com.wetech.demo.web3j.address.Address20;
+
+import java.math.BigInteger;
+
+/**
+ * A token holder and its balance
+ */
+public record Holder(Address20 address, BigInteger balance) {
+}
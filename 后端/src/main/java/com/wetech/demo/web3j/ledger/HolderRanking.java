@@ -0,0 +1,158 @@
+package com.wetech.demo.web3j.ledger;
+
+import com.wetech.demo.web3j.address.Address20;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Holders ordered by balance, largest first, in a treap whose nodes count their subtree, so
+ * a balance change and the lookup of the holder at any rank both take O(log n). Ties are
+ * ordered by address. Not thread-safe.
+ */
+final class HolderRanking {
+
+    private Node root;
+
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Move a holder from its old to its new position; a zero balance means not ranked
+     */
+    void update(Address20 address, BigInteger oldBalance, BigInteger newBalance) {
+        if (oldBalance.signum() != 0) {
+            Node[] parts = split(root, oldBalance, address);
+            root = merge(parts[0], removeFirst(parts[1]));
+        }
+        if (newBalance.signum() != 0) {
+            Node[] parts = split(root, newBalance, address);
+            root = merge(merge(parts[0], new Node(address, newBalance)), parts[1]);
+        }
+    }
+
+    /**
+     * @param rank zero-based, {@code 0} is the largest holder
+     * @return the holder at {@code rank}
+     */
+    Holder at(int rank) {
+        Node node = root;
+        while (node != null) {
+            int left = size(node.left);
+            if (rank < left) {
+                node = node.left;
+            } else if (rank == left) {
+                return new Holder(node.address, node.balance);
+            } else {
+                rank -= left + 1;
+                node = node.right;
+            }
+        }
+        throw new IndexOutOfBoundsException(rank);
+    }
+
+    /**
+     * @return the {@code limit} largest holders, largest first
+     */
+    List<Holder> top(int limit) {
+        List<Holder> holders = new ArrayList<>(Math.min(limit, size()));
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        while (holders.size() < limit && (node != null || !path.isEmpty())) {
+            while (node != null) {
+                path.push(node);
+                node = node.left;
+            }
+            node = path.pop();
+            holders.add(new Holder(node.address, node.balance));
+            node = node.right;
+        }
+        return holders;
+    }
+
+    /**
+     * Split into the holders ranked before ({@code balance}, {@code address}) and the rest
+     */
+    private static Node[] split(Node node, BigInteger balance, Address20 address) {
+        if (node == null) {
+            return new Node[2];
+        }
+        Node[] parts;
+        if (precedes(node, balance, address)) {
+            parts = split(node.right, balance, address);
+            node.right = parts[0];
+            parts[0] = node;
+        } else {
+            parts = split(node.left, balance, address);
+            node.left = parts[1];
+            parts[1] = node;
+        }
+        node.resize();
+        return parts;
+    }
+
+    /**
+     * Join two treaps where every holder of {@code first} ranks before every holder of {@code second}
+     */
+    private static Node merge(Node first, Node second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            first.resize();
+            return first;
+        }
+        second.left = merge(first, second.left);
+        second.resize();
+        return second;
+    }
+
+    private static Node removeFirst(Node node) {
+        if (node == null) {
+            return null;
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeFirst(node.left);
+        node.resize();
+        return node;
+    }
+
+    private static boolean precedes(Node node, BigInteger balance, Address20 address) {
+        int byBalance = node.balance.compareTo(balance);
+        return byBalance > 0 || byBalance == 0 && node.address.compareTo(address) < 0;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node {
+
+        private final Address20 address;
+        private final BigInteger balance;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(Address20 address, BigInteger balance) {
+            this.address = address;
+            this.balance = balance;
+        }
+
+        private void resize() {
+            size = 1 + size(left) + size(right);
+        }
+    }
+}
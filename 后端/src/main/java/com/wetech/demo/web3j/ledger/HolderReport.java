@@ -0,0 +1,20 @@
+package com.wetech.demo.web3j.ledger;
+
+import com.wetech.demo.web3j.address.Address20;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The largest holders of a token as indexed through a block
+ * @param token       the token contract
+ * @param blockNumber the last indexed block
+ * @param holders     the number of addresses with a non-zero balance
+ * @param top         the largest holders, largest first
+ * @param thresholds  per requested percentile {@code p}, the smallest balance among the top
+ *                    {@code 100 - p} percent of holders
+ */
+public record HolderReport(Address20 token, long blockNumber, int holders, List<Holder> top,
+                           Map<Double, BigInteger> thresholds) {
+}
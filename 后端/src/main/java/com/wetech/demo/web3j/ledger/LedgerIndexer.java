@@ -0,0 +1,478 @@
+package com.wetech.demo.web3j.ledger;
+
+import com.wetech.demo.web3j.address.Address20;
+import com.wetech.demo.web3j.deploy.DeployableContract;
+import com.wetech.demo.web3j.event.LogsBloom;
+import com.wetech.demo.web3j.event.TokenLog;
+import com.wetech.demo.web3j.event.TokenLogDecoder;
+import com.wetech.demo.web3j.registry.ContractRecord;
+import com.wetech.demo.web3j.registry.ContractRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Indexes the {@code Transfer} logs of the active token contracts of the
+ * {@link ContractRegistry} into {@link TransferLedger}s, from the deploy block up to
+ * {@code web3j.ledger.confirmations} blocks below the head. Indexed blocks are treated as final,
+ * so balances answered from the index never change. Contracts loaded by address have no known
+ * deploy block, so a ledger could miss their earlier transfers; they are not indexed and their
+ * balances are read from chain. Every indexed range is passed on to the {@link TransferListener} beans
+ * before the ledger moves past it; a listener that fails holds the ledger back until it
+ * accepts the range on a later poll.
+ * With {@code web3j.ledger.bloom-filter.enabled} the block headers are read first and logs are
+ * only requested for blocks whose {@link LogsBloom} may hold a transfer of the token.
+ * <p>
+ * The latest checkpoint of every ledger is periodically written as a {@link LedgerSnapshot};
+ * a restarted indexer continues from the snapshot and only replays the blocks after it. The
+ * listeners, whose state is not in the snapshot, are first replayed the blocks of their
+ * {@link TransferListener#retentionSeconds() retention} before it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LedgerIndexer {
+
+    private static final String TRANSFER_TOPIC = TokenLogDecoder.TRANSFER_TOPIC;
+
+    /** Token wrappers sharing the standard {@code Transfer(address,address,uint256)} event */
+    private static final Set<String> TOKEN_TYPES = Set.of(
+            DeployableContract.ERC20_DL.getTypeName(),
+            DeployableContract.ERC20_YFP.getTypeName(),
+            DeployableContract.YG_TOKEN.getTypeName());
+
+    private final Web3j web3j;
+    private final ContractRegistry registry;
+    private final MeterRegistry meterRegistry;
+    private final List<TransferListener> listeners;
+
+    @Value("${web3j.ledger.enabled:true}")
+    private boolean enabled;
+
+    @Value("${web3j.ledger.confirmations:12}")
+    private int confirmations;
+
+    @Value("${web3j.ledger.chunk-size:2000}")
+    private int chunkSize;
+
+    @Value("${web3j.ledger.max-chunks-per-poll:10}")
+    private int maxChunksPerPoll;
+
+    @Value("${web3j.ledger.bloom-filter.enabled:false}")
+    private boolean bloomFilter;
+
+    @Value("${web3j.ledger.bloom-filter.header-batch-size:100}")
+    private int headerBatchSize;
+
+    @Value("${web3j.ledger.checkpoint-interval-blocks:1000}")
+    private long checkpointInterval;
+
+    @Value("${web3j.ledger.max-checkpoints:64}")
+    private int maxCheckpoints;
+
+    @Value("${web3j.ledger.max-top-holders:1000}")
+    private int maxTopHolders;
+
+    @Value("${web3j.ledger.snapshot.enabled:true}")
+    private boolean snapshotsEnabled;
+
+    @Value("${web3j.ledger.snapshot.dir:data/ledger}")
+    private String snapshotDir;
+
+    /** Ledgers keyed by token address */
+    private final Map<Address20, TransferLedger> ledgers = new ConcurrentHashMap<>();
+
+    private final Map<Address20, LogsBloom> blooms = new ConcurrentHashMap<>();
+
+    /** Block of the last snapshot written or restored, keyed by token address */
+    private final Map<Address20, Long> snapshotBlocks = new ConcurrentHashMap<>();
+
+    /** The last block passed to each listener, keyed by token address */
+    private final Map<Address20, Map<TransferListener, Long>> listenerCursors = new ConcurrentHashMap<>();
+
+    /** The highest block considered final, {@code -1} until the head is known */
+    private volatile long finalizedBlock = -1;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("ledger.finalized.block", this, LedgerIndexer::finalizedBlock)
+                .description("Highest block treated as final by the transfer index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the highest block whose state can no longer change, {@code -1} if unknown
+     */
+    public long finalizedBlock() {
+        return finalizedBlock;
+    }
+
+    /**
+     * @return the balance of {@code address} at the end of {@code block}, or empty if the
+     * token is not indexed through that block
+     * @throws IllegalArgumentException if an address is malformed
+     */
+    public Optional<BigInteger> balanceAt(String token, String address, long block) {
+        TransferLedger ledger = ledgers.get(Address20.of(token));
+        if (ledger == null) {
+            return Optional.empty();
+        }
+        Address20 holder = Address20.of(address);
+        synchronized (ledger) {
+            return ledger.balanceAt(holder, block);
+        }
+    }
+
+    /**
+     * @return the balances at the end of {@code block}, or empty if the token is not indexed
+     * through that block
+     */
+    public Optional<Map<Address20, BigInteger>> balancesAt(Address20 token, Collection<Address20> addresses, long block) {
+        TransferLedger ledger = ledgers.get(token);
+        if (ledger == null) {
+            return Optional.empty();
+        }
+        synchronized (ledger) {
+            return ledger.balancesAt(addresses, block);
+        }
+    }
+
+    /**
+     * @param limit       the number of largest holders to list
+     * @param percentiles the percentiles to report thresholds for, each in {@code [0, 100)}
+     * @return the largest holders as indexed so far, or empty if the token is not indexed
+     */
+    public Optional<HolderReport> topHolders(String token, int limit, List<Double> percentiles) {
+        if (limit < 1 || limit > maxTopHolders) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxTopHolders + ": " + limit);
+        }
+        percentiles.stream().filter(percentile -> !(percentile >= 0 && percentile < 100)).findFirst()
+                .ifPresent(percentile -> {
+                    throw new IllegalArgumentException("Percentiles must be in [0, 100): " + percentile);
+                });
+        TransferLedger ledger = ledgers.get(Address20.of(token));
+        if (ledger == null) {
+            return Optional.empty();
+        }
+        synchronized (ledger) {
+            return Optional.of(ledger.report(limit, percentiles));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${web3j.ledger.poll-interval-ms:2000}")
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        Map<Address20, ContractRecord> tokens = registry.all().stream()
+                .filter(record -> record.active() && TOKEN_TYPES.contains(record.type()) && record.deployBlock() != null)
+                .collect(Collectors.toMap(record -> Address20.of(record.address()), record -> record));
+        ledgers.keySet().retainAll(tokens.keySet());
+        blooms.keySet().retainAll(tokens.keySet());
+        listenerCursors.keySet().retainAll(tokens.keySet());
+        if (tokens.isEmpty()) {
+            return;
+        }
+        try {
+            long head = web3j.ethBlockNumber().send().getBlockNumber().longValueExact();
+            finalizedBlock = head - confirmations;
+            for (ContractRecord record : tokens.values()) {
+                TransferLedger ledger = ledgers.computeIfAbsent(Address20.of(record.address()),
+                        address -> newLedger(address, record.deployBlock().longValueExact()));
+                catchUp(ledger, finalizedBlock);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Transfer index sync failed, retrying on the next poll: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Write the latest checkpoint of every ledger that has a newer one than its last snapshot;
+     * checkpoints are immutable, so indexing continues while the file is written
+     */
+    @Scheduled(fixedDelayString = "${web3j.ledger.snapshot.interval-ms:300000}",
+            initialDelayString = "${web3j.ledger.snapshot.interval-ms:300000}")
+    public void writeSnapshots() {
+        if (!enabled || !snapshotsEnabled) {
+            return;
+        }
+        for (TransferLedger ledger : ledgers.values()) {
+            Map.Entry<Long, Map<Address20, BigInteger>> checkpoint;
+            synchronized (ledger) {
+                checkpoint = ledger.latestCheckpoint();
+            }
+            if (checkpoint.getKey() < 0 || checkpoint.getKey().equals(snapshotBlocks.get(ledger.token()))) {
+                continue;
+            }
+            long started = System.nanoTime();
+            Path file = snapshotFile(ledger.token());
+            try {
+                new LedgerSnapshot(ledger.token(), checkpoint.getKey(), blockHash(checkpoint.getKey()),
+                        checkpoint.getValue()).write(file);
+                snapshotBlocks.put(ledger.token(), checkpoint.getKey());
+                log.info("Wrote ledger snapshot of {} at block {}: {} holders, {} bytes in {} ms", ledger.token(),
+                        checkpoint.getKey(), checkpoint.getValue().size(), Files.size(file),
+                        (System.nanoTime() - started) / 1_000_000);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to write ledger snapshot of {} at block {}", ledger.token(), checkpoint.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * Start a ledger from its snapshot if one matches the canonical chain, otherwise from the
+     * token's start block
+     */
+    private TransferLedger newLedger(Address20 token, long startBlock) {
+        Path file = snapshotFile(token);
+        if (snapshotsEnabled && Files.exists(file)) {
+            try {
+                LedgerSnapshot snapshot = LedgerSnapshot.read(file);
+                if (!snapshot.token().equals(token) || snapshot.block() < startBlock - 1
+                        || snapshot.block() > finalizedBlock) {
+                    log.warn("Ignoring ledger snapshot of {} at block {}: not within the indexed range",
+                            token, snapshot.block());
+                } else if (!snapshot.blockHash().equals(blockHash(snapshot.block()))) {
+                    log.warn("Ignoring ledger snapshot of {} at block {}: the block is no longer canonical",
+                            token, snapshot.block());
+                } else {
+                    snapshotBlocks.put(token, snapshot.block());
+                    log.info("Restored ledger of {} at block {} with {} holders from {}",
+                            token, snapshot.block(), snapshot.balances().size(), file);
+                    rewindListeners(token, startBlock, snapshot.block());
+                    return new TransferLedger(token, snapshot.block(), snapshot.balances(),
+                            checkpointInterval, maxCheckpoints);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Ignoring unreadable ledger snapshot {}: {}", file, e.getMessage());
+            }
+        }
+        return new TransferLedger(token, startBlock, checkpointInterval, maxCheckpoints);
+    }
+
+    /**
+     * Move the cursor of every listener with a retention back to the first block of that span
+     * before {@code snapshotBlock}, so {@link #catchUp} replays it to them before going on
+     */
+    private void rewindListeners(Address20 token, long startBlock, long snapshotBlock) {
+        Map<TransferListener, Long> cursors = listenerCursors.computeIfAbsent(token, address -> new ConcurrentHashMap<>());
+        try {
+            long snapshotTime = header(snapshotBlock).getTimestamp().longValueExact();
+            for (TransferListener listener : listeners) {
+                if (listener.retentionSeconds() > 0) {
+                    long first = firstBlockAt(snapshotTime - listener.retentionSeconds(), startBlock, snapshotBlock);
+                    cursors.put(listener, first - 1);
+                    log.info("Replaying blocks {}-{} of {} to {}", first, snapshotBlock, token,
+                            listener.getClass().getSimpleName());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot replay blocks before the ledger snapshot of {} to the listeners, "
+                    + "they start empty at block {}: {}", token, snapshotBlock, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the first block in {@code low .. high} with a timestamp of at least {@code timestamp}
+     */
+    private long firstBlockAt(long timestamp, long low, long high) throws IOException {
+        while (low < high) {
+            long middle = low + (high - low) / 2;
+            if (header(middle).getTimestamp().longValueExact() < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private String blockHash(long block) throws IOException {
+        return header(block).getHash();
+    }
+
+    private EthBlock.Block header(long block) throws IOException {
+        EthBlock.Block header = web3j.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(block)), false)
+                .send()
+                .getBlock();
+        if (header == null) {
+            throw new IOException("Unknown block " + block);
+        }
+        return header;
+    }
+
+    private Path snapshotFile(Address20 token) {
+        return Path.of(snapshotDir, token + ".snap");
+    }
+
+    private void catchUp(TransferLedger ledger, long target) throws IOException {
+        for (int chunk = 0; chunk < maxChunksPerPoll; chunk++) {
+            long replayedThrough = listenersThrough(ledger.token(), ledger.indexedThrough());
+            if (replayedThrough < ledger.indexedThrough()) {
+                long from = replayedThrough + 1;
+                long to = Math.min(ledger.indexedThrough(), from + chunkSize - 1);
+                notifyListeners(ledger.token(), fetchTransfers(ledger.token(), from, to), from, to);
+                continue;
+            }
+            long from = ledger.indexedThrough() + 1;
+            if (from > target) {
+                return;
+            }
+            long to = Math.min(target, from + chunkSize - 1);
+            List<Transfer> transfers = fetchTransfers(ledger.token(), from, to);
+            notifyListeners(ledger.token(), transfers, from, to);
+            synchronized (ledger) {
+                ledger.apply(transfers, to);
+                log.debug("Indexed {} transfers of {} in blocks {}-{}, {} holders",
+                        transfers.size(), ledger.token(), from, to, ledger.holders());
+            }
+        }
+    }
+
+    /**
+     * @return the last block every listener of the token has seen, {@code indexedThrough} for
+     * those without a cursor
+     */
+    private long listenersThrough(Address20 token, long indexedThrough) {
+        Map<TransferListener, Long> cursors = listenerCursors.get(token);
+        return cursors == null ? indexedThrough
+                : listeners.stream().mapToLong(listener -> cursors.getOrDefault(listener, indexedThrough))
+                        .min().orElse(indexedThrough);
+    }
+
+    /**
+     * Pass the range to every listener that has not seen it yet; a listener that already
+     * accepted part of it on an earlier, failed attempt only gets the blocks after its cursor
+     */
+    private void notifyListeners(Address20 token, List<Transfer> transfers, long from, long to) {
+        Map<TransferListener, Long> cursors = listenerCursors.computeIfAbsent(token, address -> new ConcurrentHashMap<>());
+        for (TransferListener listener : listeners) {
+            long first = Math.max(from, cursors.getOrDefault(listener, from - 1) + 1);
+            if (first > to) {
+                continue;
+            }
+            List<Transfer> unseen = first == from ? transfers
+                    : transfers.stream().filter(transfer -> transfer.block() >= first).toList();
+            try {
+                listener.onTransfers(token, unseen, first, to);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Transfer listener " + listener.getClass().getSimpleName()
+                        + " failed on blocks " + first + "-" + to + ": " + e.getMessage(), e);
+            }
+            cursors.put(listener, to);
+        }
+    }
+
+    private List<Transfer> fetchTransfers(Address20 token, long from, long to) throws IOException {
+        if (bloomFilter) {
+            return fetchTransfersByBloom(token, from, to);
+        }
+        EthFilter filter = new EthFilter(
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(from)),
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(to)),
+                token.toString());
+        filter.addSingleTopic(TRANSFER_TOPIC);
+        EthLog response = web3j.ethGetLogs(filter).send();
+        if (response.hasError()) {
+            throw new IOException("eth_getLogs failed: " + response.getError().getMessage());
+        }
+        List<Transfer> transfers = new ArrayList<>(response.getLogs().size());
+        addTransfers(response, transfers);
+        return transfers;
+    }
+
+    /**
+     * Read the headers of the range in batches and only ask for the logs of blocks whose
+     * {@code logsBloom} may contain a {@code Transfer} of the token
+     */
+    private List<Transfer> fetchTransfersByBloom(Address20 token, long from, long to) throws IOException {
+        LogsBloom bloom = blooms.computeIfAbsent(token, address -> new LogsBloom(address.toString(), List.of(TRANSFER_TOPIC)));
+        List<String> candidates = new ArrayList<>();
+        for (long start = from; start <= to; start += headerBatchSize) {
+            BatchRequest batch = web3j.newBatch();
+            for (long number = start; number <= Math.min(to, start + headerBatchSize - 1); number++) {
+                batch.add(web3j.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(number)), false));
+            }
+            for (Response<?> response : send(batch)) {
+                EthBlock.Block header = ((EthBlock) response).getBlock();
+                if (header == null) {
+                    throw new IOException("Missing block header in " + start + "-" + to);
+                }
+                if (bloom.mightMatch(header.getLogsBloom())) {
+                    candidates.add(header.getHash());
+                }
+            }
+        }
+        blocksCounter(false).increment(to - from + 1 - candidates.size());
+        blocksCounter(true).increment(candidates.size());
+        List<Transfer> transfers = new ArrayList<>();
+        for (int start = 0; start < candidates.size(); start += headerBatchSize) {
+            BatchRequest batch = web3j.newBatch();
+            for (String blockHash : candidates.subList(start, Math.min(candidates.size(), start + headerBatchSize))) {
+                EthFilter filter = new EthFilter(blockHash, token.toString());
+                filter.addSingleTopic(TRANSFER_TOPIC);
+                batch.add(web3j.ethGetLogs(filter));
+            }
+            for (Response<?> response : send(batch)) {
+                addTransfers((EthLog) response, transfers);
+            }
+        }
+        return transfers;
+    }
+
+    private static List<? extends Response<?>> send(BatchRequest batch) throws IOException {
+        List<? extends Response<?>> responses = batch.send().getResponses();
+        if (responses.size() != batch.getRequests().size()) {
+            throw new IOException("Expected " + batch.getRequests().size() + " responses, got " + responses.size());
+        }
+        for (Response<?> response : responses) {
+            if (response.hasError()) {
+                throw new IOException("Batch request failed: " + response.getError().getMessage());
+            }
+        }
+        return responses;
+    }
+
+    private static void addTransfers(EthLog response, List<Transfer> transfers) {
+        for (EthLog.LogResult<?> result : response.getLogs()) {
+            TokenLog decoded = TokenLogDecoder.decode((Log) result.get());
+            if (decoded != null && decoded.kind() == TokenLog.Kind.TRANSFER) {
+                transfers.add(new Transfer(decoded.blockNumber(), decoded.from(), decoded.to(), decoded.value()));
+            }
+        }
+    }
+
+    private Counter blocksCounter(boolean fetched) {
+        return Counter.builder("ledger.sync.blocks")
+                .description("Blocks scanned with the logsBloom filter, split into those whose logs were fetched and those skipped")
+                .tag("fetched", String.valueOf(fetched))
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,209 @@
+package com.wetech.demo.web3j.ledger;
+
+import com.wetech.demo.web3j.address.Address20;
+import org.web3j.utils.Numeric;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The balances of one token at the end of a final block, as written to and read from disk.
+ * <p>
+ * Format, version 2:
+ * <pre>
+ * magic "LSNP" | version u8 | token 20 bytes | block varint | block hash 32 bytes
+ * | holder count varint | per holder, ordered by address: address 20 bytes, balance zigzag varint
+ * | CRC32C of everything before, u32
+ * </pre>
+ * Varints are unsigned LEB128: seven bits per byte, least significant group first. Balances
+ * are zigzag encoded first ({@code 2v} for {@code v >= 0}, {@code -2v - 1} otherwise), since a
+ * ledger started after the token's deploy block holds negative balances for holders whose
+ * earlier credits it never saw. Version 1 stored balances as plain varints and is still read.
+ */
+record LedgerSnapshot(Address20 token, long block, String blockHash, Map<Address20, BigInteger> balances) {
+
+    private static final byte[] MAGIC = "LSNP".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 2;
+    private static final int UNSIGNED_BALANCES_VERSION = 1;
+    private static final int HASH_LENGTH = 32;
+    /** A uint256, and a zigzag encoded int257, takes at most 37 seven-bit groups */
+    private static final int MAX_VARINT_BYTES = 37;
+
+    /**
+     * Write the snapshot to a temporary file next to {@code file} and move it into place, so
+     * readers see either the previous or the new snapshot in full
+     */
+    void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            CRC32C checksum = new CRC32C();
+            try (OutputStream raw = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw, 1 << 16))) {
+                CheckedOutputStream checked = new CheckedOutputStream(out, checksum);
+                DataOutputStream body = new DataOutputStream(checked);
+                body.write(MAGIC);
+                body.writeByte(VERSION);
+                byte[] address = new byte[Address20.BYTES];
+                token.writeTo(address, 0);
+                body.write(address);
+                writeVarint(body, BigInteger.valueOf(block));
+                body.write(Numeric.hexStringToByteArray(blockHash));
+                List<Address20> holders = new ArrayList<>(balances.keySet());
+                holders.sort(null);
+                writeVarint(body, BigInteger.valueOf(holders.size()));
+                for (Address20 holder : holders) {
+                    holder.writeTo(address, 0);
+                    body.write(address);
+                    writeVarint(body, zigzag(balances.get(holder)));
+                }
+                body.flush();
+                out.writeInt((int) checksum.getValue());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @throws IOException if the file cannot be read, is of another version or is corrupt
+     */
+    static LedgerSnapshot read(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < MAGIC.length + 4) {
+            throw new IOException("Truncated ledger snapshot " + file);
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes, 0, bytes.length - 4);
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if ((int) checksum.getValue() != in.getInt(bytes.length - 4)) {
+            throw new IOException("Checksum mismatch in ledger snapshot " + file);
+        }
+        in.limit(bytes.length - 4);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.get(magic);
+            int version = in.get() & 0xff;
+            if (!Arrays.equals(magic, MAGIC) || version != VERSION && version != UNSIGNED_BALANCES_VERSION) {
+                throw new IOException("Unsupported ledger snapshot " + file + ", version " + version);
+            }
+            Address20 token = readAddress(in);
+            long block = readVarint(in).longValueExact();
+            String blockHash = readHex(in, HASH_LENGTH);
+            int holders = readVarint(in).intValueExact();
+            Map<Address20, BigInteger> balances = new HashMap<>(holders * 4 / 3 + 1);
+            for (int i = 0; i < holders; i++) {
+                Address20 holder = readAddress(in);
+                BigInteger balance = readVarint(in);
+                balances.put(holder, version == UNSIGNED_BALANCES_VERSION ? balance : unzigzag(balance));
+            }
+            if (in.hasRemaining()) {
+                throw new IOException("Trailing bytes in ledger snapshot " + file);
+            }
+            return new LedgerSnapshot(token, block, blockHash, balances);
+        } catch (BufferUnderflowException | ArithmeticException e) {
+            throw new IOException("Malformed ledger snapshot " + file, e);
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, BigInteger value) throws IOException {
+        if (value.signum() < 0) {
+            throw new IOException("Negative value in ledger snapshot: " + value);
+        }
+        if (value.bitLength() < Long.SIZE) {
+            long remaining = value.longValue();
+            while (remaining >= 0x80) {
+                out.writeByte((int) (remaining & 0x7f) | 0x80);
+                remaining >>>= 7;
+            }
+            out.writeByte((int) remaining);
+            return;
+        }
+        // seven bits at a time from the big-endian magnitude, least significant first
+        byte[] magnitude = value.toByteArray();
+        int bits = value.bitLength();
+        for (int offset = 0; ; offset += 7) {
+            int index = magnitude.length - 1 - (offset >>> 3);
+            int window = (magnitude[index] & 0xff) | (index > 0 ? (magnitude[index - 1] & 0xff) << 8 : 0);
+            int group = (window >>> (offset & 7)) & 0x7f;
+            if (offset + 7 >= bits) {
+                out.writeByte(group);
+                return;
+            }
+            out.writeByte(group | 0x80);
+        }
+    }
+
+    private static BigInteger zigzag(BigInteger value) {
+        return value.signum() >= 0 ? value.shiftLeft(1) : value.negate().shiftLeft(1).subtract(BigInteger.ONE);
+    }
+
+    private static BigInteger unzigzag(BigInteger value) {
+        return value.testBit(0) ? value.add(BigInteger.ONE).shiftRight(1).negate() : value.shiftRight(1);
+    }
+
+    private static BigInteger readVarint(ByteBuffer in) throws IOException {
+        long small = 0;
+        for (int shift = 0; shift < 63; shift += 7) {
+            int b = in.get() & 0xff;
+            small |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return BigInteger.valueOf(small);
+            }
+        }
+        // beyond 63 bits: collect the groups into a little-endian magnitude
+        byte[] littleEndian = new byte[MAX_VARINT_BYTES * 7 / 8 + 2];
+        for (int i = 0; i < 8; i++) {
+            littleEndian[i] = (byte) (small >>> (8 * i));
+        }
+        for (int offset = 63; ; offset += 7) {
+            if (offset >= MAX_VARINT_BYTES * 7) {
+                throw new IOException("Varint longer than " + MAX_VARINT_BYTES + " bytes");
+            }
+            int b = in.get() & 0xff;
+            int group = (b & 0x7f) << (offset & 7);
+            littleEndian[offset >>> 3] |= (byte) group;
+            littleEndian[(offset >>> 3) + 1] |= (byte) (group >>> 8);
+            if ((b & 0x80) == 0) {
+                byte[] bigEndian = new byte[littleEndian.length];
+                for (int i = 0; i < littleEndian.length; i++) {
+                    bigEndian[i] = littleEndian[littleEndian.length - 1 - i];
+                }
+                return new BigInteger(1, bigEndian);
+            }
+        }
+    }
+
+    private static Address20 readAddress(ByteBuffer in) {
+        if (in.remaining() < Address20.BYTES) {
+            throw new BufferUnderflowException();
+        }
+        Address20 address = Address20.fromBytes(in.array(), in.position());
+        in.position(in.position() + Address20.BYTES);
+        return address;
+    }
+
+    private static String readHex(ByteBuffer in, int length) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return Numeric.toHexString(bytes);
+    }
+}
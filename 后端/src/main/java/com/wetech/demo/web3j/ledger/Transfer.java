@@ -0,0 +1,23 @@
+package com.wetech.demo.web3j.ledger;
+
+import com.wetech.demo.web3j.address.Address20;
+
+import java.math.BigInteger;
+
+/**
+ * One indexed balance movement of a token; mints come from and burns go to the zero address
+ * @param block the block of the {@code Transfer} log
+ * @param from  the sender
+ * @param to    the recipient
+ * @param value the amount moved
+ */
+public record Transfer(long block, Address20 from, Address20 to, BigInteger value) {
+
+    public boolean isMint() {
+        return from.equals(Address20.ZERO);
+    }
+
+    public boolean isBurn() {
+        return to.equals(Address20.ZERO);
+    }
+}
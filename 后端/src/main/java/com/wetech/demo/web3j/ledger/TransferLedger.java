@@ -0,0 +1,190 @@
+package com.wetech.demo.web3j.ledger;
+
+import com.wetech.demo.web3j.address.Address20;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Token balances materialised from {@code Transfer} logs of one contract. Every
+ * {@code checkpointInterval} blocks an immutable copy of the balances is kept, together with
+ * the transfers since the oldest kept checkpoint, so the balance at any indexed block is a
+ * checkpoint plus a short replay. Current balances are also kept in a {@link HolderRanking}.
+ * Callers synchronise on the ledger.
+ */
+final class TransferLedger {
+
+    private static final BigInteger ZERO = BigInteger.ZERO;
+
+    private final Address20 token;
+    private final long checkpointInterval;
+    private final int maxCheckpoints;
+
+    private final Map<Address20, BigInteger> balances = new HashMap<>();
+    private final HolderRanking ranking = new HolderRanking();
+    private final NavigableMap<Long, Map<Address20, BigInteger>> checkpoints = new TreeMap<>();
+    /** Transfers after the oldest checkpoint, in chain order */
+    private final List<Transfer> deltas = new ArrayList<>();
+
+    private long indexedThrough;
+    private long nextCheckpoint;
+
+    TransferLedger(Address20 token, long startBlock, long checkpointInterval, int maxCheckpoints) {
+        // nothing was transferred before the contract existed
+        this(token, startBlock - 1, Map.of(), checkpointInterval, maxCheckpoints);
+    }
+
+    /**
+     * Continue from the balances at the end of {@code block}, e.g. restored from a snapshot
+     */
+    TransferLedger(Address20 token, long block, Map<Address20, BigInteger> balances, long checkpointInterval,
+                   int maxCheckpoints) {
+        this.token = token;
+        this.checkpointInterval = checkpointInterval;
+        this.maxCheckpoints = maxCheckpoints;
+        this.indexedThrough = block;
+        checkpoints.put(block, Map.copyOf(balances));
+        balances.forEach(this::credit);
+        this.nextCheckpoint = (Math.max(block, 0) / checkpointInterval + 1) * checkpointInterval;
+    }
+
+    Address20 token() {
+        return token;
+    }
+
+    long indexedThrough() {
+        return indexedThrough;
+    }
+
+    int holders() {
+        return balances.size();
+    }
+
+    /**
+     * @param limit       the number of largest holders to list
+     * @param percentiles the percentiles to report thresholds for, each in {@code [0, 100)}
+     */
+    HolderReport report(int limit, List<Double> percentiles) {
+        Map<Double, BigInteger> thresholds = new LinkedHashMap<>();
+        int holders = ranking.size();
+        for (double percentile : percentiles) {
+            if (holders > 0) {
+                int rank = (int) Math.ceil(holders * (100 - percentile) / 100) - 1;
+                thresholds.put(percentile, ranking.at(Math.max(0, rank)).balance());
+            }
+        }
+        return new HolderReport(token, indexedThrough, holders, ranking.top(limit), thresholds);
+    }
+
+    /**
+     * Apply the transfers of blocks {@code indexedThrough + 1 .. through}
+     * @param transfers the transfers of the range in chain order
+     */
+    void apply(List<Transfer> transfers, long through) {
+        for (Transfer transfer : transfers) {
+            checkpointBefore(transfer.block());
+            credit(transfer.from(), transfer.value().negate());
+            credit(transfer.to(), transfer.value());
+            deltas.add(transfer);
+        }
+        checkpointBefore(through + 1);
+        indexedThrough = through;
+    }
+
+    /**
+     * @return the most recent checkpoint; its balances are immutable and safe to read unlocked
+     */
+    Map.Entry<Long, Map<Address20, BigInteger>> latestCheckpoint() {
+        return checkpoints.lastEntry();
+    }
+
+    boolean covers(long block) {
+        return block <= indexedThrough && checkpoints.floorKey(block) != null;
+    }
+
+    /**
+     * @return the balance at the end of {@code block}, or empty if the block is not covered
+     */
+    Optional<BigInteger> balanceAt(Address20 address, long block) {
+        return balancesAt(List.of(address), block).map(found -> found.get(address));
+    }
+
+    /**
+     * @return the balances at the end of {@code block}, or empty if the block is not covered
+     */
+    Optional<Map<Address20, BigInteger>> balancesAt(Collection<Address20> addresses, long block) {
+        if (!covers(block)) {
+            return Optional.empty();
+        }
+        Map.Entry<Long, Map<Address20, BigInteger>> checkpoint = checkpoints.floorEntry(block);
+        Map<Address20, BigInteger> result = new HashMap<>(addresses.size() * 2);
+        for (Address20 address : addresses) {
+            result.put(address, checkpoint.getValue().getOrDefault(address, ZERO));
+        }
+        for (int i = firstDeltaAfter(checkpoint.getKey()); i < deltas.size(); i++) {
+            Transfer transfer = deltas.get(i);
+            if (transfer.block() > block) {
+                break;
+            }
+            result.computeIfPresent(transfer.from(), (address, balance) -> balance.subtract(transfer.value()));
+            result.computeIfPresent(transfer.to(), (address, balance) -> balance.add(transfer.value()));
+        }
+        return Optional.of(result);
+    }
+
+    private void credit(Address20 address, BigInteger amount) {
+        if (address.equals(Address20.ZERO)) {
+            // mints and burns, not a holder
+            return;
+        }
+        BigInteger previous = balances.getOrDefault(address, ZERO);
+        BigInteger balance = previous.add(amount);
+        if (balance.signum() == 0) {
+            balances.remove(address);
+        } else {
+            balances.put(address, balance);
+        }
+        ranking.update(address, previous, balance);
+    }
+
+    /**
+     * Take every checkpoint due before transfers of {@code block} are applied
+     */
+    private void checkpointBefore(long block) {
+        if (nextCheckpoint >= block) {
+            return;
+        }
+        // blocks without transfers share the balances of the checkpoint before them
+        checkpoints.put(block - 1 - (block - 1) % checkpointInterval, Map.copyOf(balances));
+        nextCheckpoint = ((block - 1) / checkpointInterval + 1) * checkpointInterval;
+        while (checkpoints.size() > maxCheckpoints) {
+            checkpoints.pollFirstEntry();
+            deltas.subList(0, firstDeltaAfter(checkpoints.firstKey())).clear();
+        }
+    }
+
+    /**
+     * @return the index of the first transfer in a block after {@code block}
+     */
+    private int firstDeltaAfter(long block) {
+        int low = 0;
+        int high = deltas.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (deltas.get(mid).block() <= block) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
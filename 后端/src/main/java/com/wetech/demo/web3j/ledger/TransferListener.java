@@ -0,0 +1,29 @@
+package com.wetech.demo.web3j.ledger;
+
+import com.wetech.demo.web3j.address.Address20;
+
+import java.util.List;
+
+/**
+ * Receives the transfers of every range of blocks the {@link LedgerIndexer} indexes, in chain
+ * order and once each, on the indexing thread. A listener that throws leaves the range
+ * unindexed; it is offered again on the next poll, so it must not keep any part of it.
+ */
+public interface TransferListener {
+
+    /**
+     * @param token     the token contract
+     * @param transfers the transfers of blocks {@code from .. through}, in chain order
+     * @param from      the first block of the range
+     * @param through   the last block of the range
+     */
+    void onTransfers(Address20 token, List<Transfer> transfers, long from, long through);
+
+    /**
+     * @return how many seconds of block time before the indexed range the listener keeps; a
+     * ledger restored from a snapshot first replays that span to it, {@code 0} for none
+     */
+    default long retentionSeconds() {
+        return 0;
+    }
+}
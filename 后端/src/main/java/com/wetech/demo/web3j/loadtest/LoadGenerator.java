@@ -0,0 +1,265 @@
+package com.wetech.demo.web3j.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator: requests are issued on a fixed arrival schedule regardless
+ * of how many are still in flight, and latency is measured from each request's intended
+ * start time, so queueing in the service shows up in the percentiles instead of silently
+ * lowering the offered rate (coordinated omission).
+ * <p>
+ * Requests go through the service's own REST endpoints over HTTP, so the whole stack is
+ * exercised, against whichever node the service is configured for, including the
+ * in-process simulated node.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "web3j.loadtest.enabled", havingValue = "true")
+public class LoadGenerator {
+
+    private static final String INITIAL_SUPPLY = "1000000000000000000000000";
+
+    @Value("${web3j.loadtest.target-url:http://localhost:${server.port:8080}}")
+    private String targetUrl;
+
+    @Value("${web3j.loadtest.max-outstanding:10000}")
+    private int maxOutstanding;
+
+    @Value("${web3j.loadtest.accounts:1000}")
+    private int accountCount;
+
+    @Value("${web3j.loadtest.request-timeout-ms:60000}")
+    private long requestTimeout;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Start a load test; only one may run at a time
+     * @param mix      relative weight of each operation
+     * @param rate     arrival rate, in requests per second
+     * @param duration length of the measured window
+     * @param warmup   length of the unmeasured lead-in at the same rate
+     * @param setup    deploy fresh contracts and mint a supply before starting
+     * @param mined    measure writes until their transaction is mined, not only until it is accepted
+     * @return the report, once every request has completed or timed out
+     */
+    public CompletableFuture<Map<String, Object>> run(Map<LoadOperation, Integer> mix, double rate,
+                                                      Duration duration, Duration warmup, boolean setup,
+                                                      boolean mined) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        if (duration.isNegative() || duration.isZero() || warmup.isNegative()) {
+            throw new IllegalArgumentException("Duration must be positive and warmup not negative");
+        }
+        WeightedMix weightedMix = new WeightedMix(mix);
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A load test is already running");
+        }
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        Thread dispatcher = new Thread(() -> {
+            try {
+                if (setup) {
+                    setup(mix.keySet());
+                }
+                result.complete(dispatch(weightedMix, rate, duration, warmup, mined));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            } finally {
+                running.set(false);
+            }
+        }, "load-generator");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        return result;
+    }
+
+    private Map<String, Object> dispatch(WeightedMix mix, double rate, Duration duration, Duration warmup,
+                                         boolean mined) throws InterruptedException {
+        List<String> accounts = accounts();
+        Map<LoadOperation, LoadStatistics> statistics = new EnumMap<>(LoadOperation.class);
+        mix.operations().forEach(operation -> statistics.put(operation, new LoadStatistics()));
+        LoadStatistics total = new LoadStatistics();
+        AtomicInteger outstanding = new AtomicInteger();
+        AtomicLong lastCompletion = new AtomicLong();
+        SplittableRandom random = new SplittableRandom();
+
+        long start = System.nanoTime();
+        long measureStart = start + warmup.toNanos();
+        long end = measureStart + duration.toNanos();
+        double interval = 1e9 / rate;
+        log.info("Load test started: {} req/s for {} after {} warmup, mix {}, writes measured until {}",
+                rate, duration, warmup, mix, mined ? "mined" : "accepted");
+
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * interval);
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            LoadOperation operation = mix.pick(random);
+            String account = accounts.get(random.nextInt(accounts.size()));
+            boolean measured = intended >= measureStart;
+            LoadStatistics operationStatistics = statistics.get(operation);
+            if (outstanding.get() >= maxOutstanding) {
+                if (measured) {
+                    operationStatistics.dropped();
+                    total.dropped();
+                }
+                continue;
+            }
+            if (measured) {
+                operationStatistics.sent();
+                total.sent();
+            }
+            outstanding.incrementAndGet();
+            httpClient.sendAsync(request(operation, account, mined), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, ex) -> {
+                        long now = System.nanoTime();
+                        if (measured) {
+                            String error = ex != null ? errorType(ex)
+                                    : response.statusCode() / 100 == 2 ? null
+                                    : "http-" + response.statusCode();
+                            operationStatistics.record(now - intended, error);
+                            total.record(now - intended, error);
+                            lastCompletion.accumulateAndGet(now, Math::max);
+                        }
+                        outstanding.decrementAndGet();
+                    });
+        }
+
+        long drainDeadline = System.nanoTime() + Duration.ofMillis(requestTimeout).toNanos();
+        while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        double elapsedSeconds = (Math.max(lastCompletion.get(), end) - measureStart) / 1e9;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("targetUrl", targetUrl);
+        report.put("targetRate", rate);
+        report.put("durationSeconds", duration.toMillis() / 1000.0);
+        report.put("warmupSeconds", warmup.toMillis() / 1000.0);
+        report.put("writesMeasuredUntil", mined ? "mined" : "accepted");
+        report.put("elapsedSeconds", String.format("%.3f", elapsedSeconds));
+        report.put("unfinished", outstanding.get());
+        report.put("total", total.toResponse(elapsedSeconds));
+        Map<String, Object> operations = new LinkedHashMap<>();
+        statistics.forEach((operation, stats) ->
+                operations.put(operation.name().toLowerCase(), stats.toResponse(elapsedSeconds)));
+        report.put("operations", operations);
+        log.info("Load test finished: {}", report.get("total"));
+        return report;
+    }
+
+    private HttpRequest request(LoadOperation operation, String account, boolean mined) {
+        return HttpRequest.newBuilder(URI.create(targetUrl + operation.pathAndQuery(account, mined)))
+                .method(operation.method(), HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofMillis(requestTimeout))
+                .build();
+    }
+
+    private void setup(Set<LoadOperation> operations) throws IOException, InterruptedException {
+        boolean token = operations.stream().anyMatch(operation -> operation.path().startsWith("/api/erc20"));
+        if (token) {
+            post("/api/erc20/deploy");
+            // wait for the supply to exist, or the first transfers run against an unfunded sender
+            post("/api/erc20/mint?value=" + INITIAL_SUPPLY + "&wait=true");
+        }
+        if (operations.contains(LoadOperation.STORAGE_GET) || operations.contains(LoadOperation.STORAGE_SET)) {
+            post("/api/storage/deploy");
+        }
+    }
+
+    private void post(String pathAndQuery) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(targetUrl + pathAndQuery))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofMillis(requestTimeout))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Load test setup " + pathAndQuery + " failed: " + response.body());
+        }
+        log.info("Load test setup {}: {}", pathAndQuery, response.body());
+    }
+
+    /**
+     * Deterministic pseudo-random accounts, so balances accumulate across runs
+     */
+    private List<String> accounts() {
+        List<String> accounts = new ArrayList<>(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            accounts.add("0x" + Numeric.cleanHexPrefix(Hash.sha3String("loadtest-" + i)).substring(24));
+        }
+        return accounts;
+    }
+
+    private static String errorType(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause.getClass().getSimpleName();
+    }
+
+    private static final class WeightedMix {
+
+        private final LoadOperation[] operations;
+        private final int[] cumulativeWeights;
+        private final String description;
+
+        WeightedMix(Map<LoadOperation, Integer> weights) {
+            List<Map.Entry<LoadOperation, Integer>> entries = weights.entrySet().stream()
+                    .filter(entry -> entry.getValue() > 0)
+                    .toList();
+            if (entries.isEmpty()) {
+                throw new IllegalArgumentException("Mix must contain at least one operation with a positive weight");
+            }
+            operations = new LoadOperation[entries.size()];
+            cumulativeWeights = new int[entries.size()];
+            int sum = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                operations[i] = entries.get(i).getKey();
+                sum += entries.get(i).getValue();
+                cumulativeWeights[i] = sum;
+            }
+            description = weights.toString();
+        }
+
+        LoadOperation pick(SplittableRandom random) {
+            int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            int index = Arrays.binarySearch(cumulativeWeights, ticket + 1);
+            return operations[index >= 0 ? index : -index - 1];
+        }
+
+        List<LoadOperation> operations() {
+            return Arrays.asList(operations);
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.wetech.demo.web3j.loadtest;
+
+import java.util.function.Function;
+
+/**
+ * A request the load generator can issue against the service's own REST endpoints.
+ * Query strings take the (randomly chosen) account the operation targets.
+ */
+public enum LoadOperation {
+
+    BALANCE("GET", "/api/erc20/balance", account -> "address=" + account),
+    ALLOWANCE("GET", "/api/erc20/allowance", account -> "owner=" + account + "&spender=" + account),
+    INFO("GET", "/api/erc20/info", account -> ""),
+    TRANSFER("POST", "/api/erc20/transfer", account -> "to=" + account + "&value=1"),
+    APPROVE("POST", "/api/erc20/approve", account -> "spender=" + account + "&value=1"),
+    MINT("POST", "/api/erc20/mint", account -> "value=1"),
+    BURN("POST", "/api/erc20/burn", account -> "value=1"),
+    STORAGE_GET("GET", "/api/storage/value/get", account -> ""),
+    STORAGE_SET("POST", "/api/storage/value/set", account -> "value=" + (account.hashCode() & 0xffff));
+
+    private final String method;
+    private final String path;
+    private final Function<String, String> query;
+
+    LoadOperation(String method, String path, Function<String, String> query) {
+        this.method = method;
+        this.path = path;
+        this.query = query;
+    }
+
+    public String method() {
+        return method;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    /**
+     * @param waitMined for writes, whether the endpoint holds the response until the transaction
+     *                  is mined rather than answering once it is accepted into the outbox
+     */
+    public String pathAndQuery(String account, boolean waitMined) {
+        String parameters = query.apply(account);
+        if (isWrite() && waitMined) {
+            parameters = parameters.isEmpty() ? "wait=true" : parameters + "&wait=true";
+        }
+        return parameters.isEmpty() ? path : path + "?" + parameters;
+    }
+
+    public boolean isWrite() {
+        return "POST".equals(method);
+    }
+}
@@ -0,0 +1,55 @@
+package com.wetech.demo.web3j.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Named workload mixes, as relative weights per {@link LoadOperation}.
+ */
+public enum LoadProfile {
+
+    /** Wallet-style traffic: mostly balance lookups with occasional transfers. */
+    READ_HEAVY(Map.of(LoadOperation.BALANCE, 95, LoadOperation.TRANSFER, 5)),
+
+    /** Dashboard traffic: reads only. */
+    READ_ONLY(Map.of(LoadOperation.BALANCE, 80, LoadOperation.ALLOWANCE, 10, LoadOperation.INFO, 10)),
+
+    /** Issuance bursts: supply changes only. */
+    MINT_BURN(Map.of(LoadOperation.MINT, 50, LoadOperation.BURN, 50)),
+
+    /** Even mix of token reads and writes. */
+    BALANCED(Map.of(LoadOperation.BALANCE, 40, LoadOperation.ALLOWANCE, 10,
+            LoadOperation.TRANSFER, 40, LoadOperation.APPROVE, 10)),
+
+    /** SimpleStorage get/set. */
+    STORAGE(Map.of(LoadOperation.STORAGE_GET, 90, LoadOperation.STORAGE_SET, 10));
+
+    private final Map<LoadOperation, Integer> weights;
+
+    LoadProfile(Map<LoadOperation, Integer> weights) {
+        this.weights = new EnumMap<>(weights);
+    }
+
+    public Map<LoadOperation, Integer> weights() {
+        return weights;
+    }
+
+    /**
+     * Parse a custom mix such as {@code balance=95,transfer=5}
+     */
+    public static Map<LoadOperation, Integer> parseMix(String mix) {
+        Map<LoadOperation, Integer> weights = new EnumMap<>(LoadOperation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in mix entry: " + entry);
+            }
+            weights.merge(LoadOperation.valueOf(parts[0].trim().toUpperCase().replace('-', '_')), weight, Integer::sum);
+        }
+        return weights;
+    }
+}
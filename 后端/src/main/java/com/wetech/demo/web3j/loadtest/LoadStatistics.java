@@ -0,0 +1,75 @@
+package com.wetech.demo.web3j.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome counters and an HdrHistogram of latencies (in microseconds) for one
+ * {@link LoadOperation}, or for the whole run.
+ */
+class LoadStatistics {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final Histogram latencies = new ConcurrentHistogram(3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    void sent() {
+        sent.increment();
+    }
+
+    void dropped() {
+        dropped.increment();
+    }
+
+    /**
+     * @param latencyNanos time from the request's intended start, not its actual send, to its response
+     * @param error        {@code null} on success
+     */
+    void record(long latencyNanos, String error) {
+        latencies.recordValue(Math.max(TimeUnit.NANOSECONDS.toMicros(latencyNanos), 1));
+        if (error == null) {
+            succeeded.increment();
+        } else {
+            errors.computeIfAbsent(error, key -> new LongAdder()).increment();
+        }
+    }
+
+    long completed() {
+        return latencies.getTotalCount();
+    }
+
+    Map<String, Object> toResponse(double elapsedSeconds) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("sent", sent.sum());
+        response.put("completed", completed());
+        response.put("succeeded", succeeded.sum());
+        response.put("dropped", dropped.sum());
+        response.put("throughput", String.format("%.1f", elapsedSeconds > 0 ? completed() / elapsedSeconds : 0));
+        Map<String, String> percentiles = new LinkedHashMap<>();
+        for (double percentile : PERCENTILES) {
+            percentiles.put("p" + (percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : percentile),
+                    millis(latencies.getValueAtPercentile(percentile)));
+        }
+        percentiles.put("max", millis(latencies.getMaxValue()));
+        percentiles.put("mean", String.format("%.3f", latencies.getMean() / 1000));
+        response.put("latencyMs", percentiles);
+        Map<String, Long> errorCounts = new LinkedHashMap<>();
+        errors.forEach((type, count) -> errorCounts.put(type, count.sum()));
+        response.put("errors", errorCounts);
+        return response;
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.3f", micros / 1000.0);
+    }
+}
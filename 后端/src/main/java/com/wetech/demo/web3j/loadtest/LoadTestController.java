@@ -0,0 +1,80 @@
+package com.wetech.demo.web3j.loadtest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/loadtest")
+@ConditionalOnProperty(name = "web3j.loadtest.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class LoadTestController {
+
+    private final LoadGenerator loadGenerator;
+
+    /**
+     * Run a load test and wait for its report
+     * @param profile  a named mix (read_heavy, read_only, mint_burn, balanced, storage)
+     * @param mix      a custom mix such as {@code balance=95,transfer=5}, overriding the profile
+     * @param rate     arrival rate, in requests per second
+     * @param duration measured window, in seconds
+     * @param warmup   unmeasured lead-in, in seconds
+     * @param setup    deploy fresh contracts and mint a supply before starting
+     * @param mined    measure writes until their transaction is mined ({@code wait=true}); otherwise
+     *                 only until the endpoint accepts them with 202
+     * @return throughput and latency percentiles, overall and per operation
+     */
+    @PostMapping("/run")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> run(
+            @RequestParam(defaultValue = "read_heavy") String profile,
+            @RequestParam(required = false) String mix,
+            @RequestParam(defaultValue = "100") double rate,
+            @RequestParam(defaultValue = "30") long duration,
+            @RequestParam(defaultValue = "5") long warmup,
+            @RequestParam(defaultValue = "false") boolean setup,
+            @RequestParam(defaultValue = "true") boolean mined) {
+        try {
+            Map<LoadOperation, Integer> weights = mix != null
+                    ? LoadProfile.parseMix(mix)
+                    : LoadProfile.valueOf(profile.toUpperCase().replace('-', '_')).weights();
+            return loadGenerator.run(weights, rate, Duration.ofSeconds(duration), Duration.ofSeconds(warmup),
+                            setup, mined)
+                    .thenApply(ResponseEntity::ok)
+                    .exceptionally(ex -> {
+                        Map<String, Object> response = new HashMap<>();
+                        response.put("error", "Load test failed: " + ex.getMessage());
+                        return ResponseEntity.internalServerError().body(response);
+                    });
+        } catch (IllegalStateException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT).body(response));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "Invalid load test parameters: " + e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
+        }
+    }
+
+    /**
+     * List the named profiles and their mixes
+     */
+    @GetMapping("/profiles")
+    public ResponseEntity<Map<String, Object>> profiles() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        Arrays.stream(LoadProfile.values())
+                .forEach(profile -> response.put(profile.name().toLowerCase(), profile.weights()));
+        return ResponseEntity.ok(response);
+    }
+}
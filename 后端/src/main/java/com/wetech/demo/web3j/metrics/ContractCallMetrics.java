@@ -0,0 +1,49 @@
+package com.wetech.demo.web3j.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Records a {@code contract.calls} timer per contract function, tagged with the outcome.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContractCallMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Time an asynchronous contract call from invocation until its future completes
+     * @param contract the contract type, e.g. {@code SimpleStorage}
+     * @param function the contract function, e.g. {@code set}
+     * @param call     starts the call
+     * @return the future returned by {@code call}
+     */
+    public <T> CompletableFuture<T> record(String contract, String function, Supplier<CompletableFuture<T>> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            sample.stop(timer(contract, function, "error"));
+            throw e;
+        }
+        return future.whenComplete((result, ex) ->
+                sample.stop(timer(contract, function, ex == null ? "success" : "error")));
+    }
+
+    private Timer timer(String contract, String function, String outcome) {
+        return Timer.builder("contract.calls")
+                .description("Contract call latency, including receipt polling for transactions")
+                .tag("contract", contract)
+                .tag("function", function)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,196 @@
+package com.wetech.demo.web3j.read;
+
+import com.wetech.demo.web3j.address.Address20;
+import com.wetech.demo.web3j.ledger.LedgerIndexer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Resolves ERC20 balances for many (token, holder) pairs at once: {@code balanceOf} calls
+ * are grouped into JSON-RPC batches, a bounded number of batches is in flight at a time,
+ * and every call is evaluated at the same block so the result is a consistent snapshot.
+ * Tokens indexed by the {@link LedgerIndexer} through the block are answered locally instead.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkBalanceReader {
+
+    private static final String BALANCE_OF_SELECTOR = Hash.sha3String("balanceOf(address)").substring(0, 10);
+
+    private final Web3j web3j;
+    private final LedgerIndexer ledgerIndexer;
+
+    @Value("${web3j.bulk.batch-size:500}")
+    private int batchSize;
+
+    @Value("${web3j.bulk.parallelism:4}")
+    private int parallelism;
+
+    @Value("${web3j.bulk.max-addresses:50000}")
+    private int maxAddresses;
+
+    @Value("${web3j.bulk.max-tokens:16}")
+    private int maxTokens;
+
+    /**
+     * Check a request before any output is produced
+     * @throws IllegalArgumentException if it is empty, too large or contains an invalid address
+     */
+    public void validate(List<String> tokens, List<String> addresses) {
+        if (addresses == null || addresses.isEmpty()) {
+            throw new IllegalArgumentException("No addresses given");
+        }
+        if (addresses.size() > maxAddresses) {
+            throw new IllegalArgumentException("At most " + maxAddresses + " addresses per request");
+        }
+        if (tokens.isEmpty() || tokens.size() > maxTokens) {
+            throw new IllegalArgumentException("Between 1 and " + maxTokens + " token contracts per request");
+        }
+        tokens.forEach(Address20::of);
+        addresses.forEach(Address20::of);
+    }
+
+    /**
+     * @param blockNumber the requested block, or {@code null} for the current head
+     * @return the block every balance of the request will be read at
+     */
+    public BigInteger pinBlock(BigInteger blockNumber) throws IOException {
+        return blockNumber != null ? blockNumber : web3j.ethBlockNumber().send().getBlockNumber();
+    }
+
+    /**
+     * Read every token balance of every address, passing the balances of each batch to
+     * {@code sink} as soon as it completes; {@code sink} is never called concurrently
+     */
+    public void read(List<String> tokens, List<String> addresses, BigInteger blockNumber,
+                     Consumer<List<BalanceEntry>> sink) throws InterruptedException {
+        DefaultBlockParameter block = DefaultBlockParameter.valueOf(blockNumber);
+        Semaphore permits = new Semaphore(parallelism);
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        List<BalanceEntry> pending = new ArrayList<>(batchSize);
+        List<Address20> parsed = addresses.stream().map(Address20::of).toList();
+        int indexed = 0;
+        for (String token : tokens) {
+            Optional<Map<Address20, BigInteger>> local = ledgerIndexer.balancesAt(Address20.of(token), parsed, blockNumber.longValueExact());
+            if (local.isPresent()) {
+                emitIndexed(token, addresses, parsed, local.get(), sink);
+                indexed++;
+                continue;
+            }
+            for (String address : addresses) {
+                pending.add(new BalanceEntry(token, address, null, null));
+                if (pending.size() == batchSize) {
+                    batches.add(send(pending, block, permits, sink));
+                    pending = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            batches.add(send(pending, block, permits, sink));
+        }
+        CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).join();
+        log.debug("Read {} balances at block {} in {} batches, {} of {} tokens from the transfer index",
+                (long) tokens.size() * addresses.size(), blockNumber, batches.size(), indexed, tokens.size());
+    }
+
+    private void emitIndexed(String token, List<String> addresses, List<Address20> parsed,
+                             Map<Address20, BigInteger> balances, Consumer<List<BalanceEntry>> sink) {
+        for (int from = 0; from < addresses.size(); from += batchSize) {
+            int to = Math.min(addresses.size(), from + batchSize);
+            List<BalanceEntry> entries = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                entries.add(new BalanceEntry(token, addresses.get(i), balances.get(parsed.get(i)), null));
+            }
+            synchronized (sink) {
+                sink.accept(entries);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> send(List<BalanceEntry> entries, DefaultBlockParameter block, Semaphore permits,
+                                         Consumer<List<BalanceEntry>> sink) throws InterruptedException {
+        permits.acquire();
+        BatchRequest batch = web3j.newBatch();
+        for (BalanceEntry entry : entries) {
+            batch.add(web3j.ethCall(Transaction.createEthCallTransaction(null, entry.token(),
+                    balanceOfCall(entry.address())), block));
+        }
+        CompletableFuture<Void> result;
+        try {
+            result = batch.sendAsync().handle((response, ex) -> {
+                List<BalanceEntry> resolved = new ArrayList<>(entries.size());
+                for (int i = 0; i < entries.size(); i++) {
+                    BalanceEntry entry = entries.get(i);
+                    resolved.add(ex != null
+                            ? entry.failed(cause(ex).getMessage())
+                            : resolve(entry, response.getResponses().size() > i ? response.getResponses().get(i) : null));
+                }
+                synchronized (sink) {
+                    sink.accept(resolved);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return result.whenComplete((ignored, ex) -> permits.release());
+    }
+
+    private static BalanceEntry resolve(BalanceEntry entry, Response<?> response) {
+        if (response == null) {
+            return entry.failed("Missing response");
+        }
+        if (response.hasError()) {
+            return entry.failed(response.getError().getMessage());
+        }
+        String value = ((EthCall) response).getValue();
+        if (value == null || Numeric.cleanHexPrefix(value).isEmpty()) {
+            return entry.failed("No contract code at " + entry.token());
+        }
+        return new BalanceEntry(entry.token(), entry.address(), Numeric.toBigInt(value), null);
+    }
+
+    /**
+     * {@code balanceOf(address)} encoded by hand: a selector and one left-padded word
+     */
+    private static String balanceOfCall(String address) {
+        return BALANCE_OF_SELECTOR + "000000000000000000000000" + Address20.of(address).toString().substring(2);
+    }
+
+    private static Throwable cause(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    /**
+     * One balance of a bulk read; exactly one of {@code balance} and {@code error} is set
+     */
+    public record BalanceEntry(String token, String address, BigInteger balance, String error) {
+
+        BalanceEntry failed(String error) {
+            return new BalanceEntry(token, address, null, error);
+        }
+    }
+}
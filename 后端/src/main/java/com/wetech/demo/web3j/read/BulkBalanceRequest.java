@@ -0,0 +1,13 @@
+package com.wetech.demo.web3j.read;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Body of {@code POST /api/erc20/balances}
+ * @param addresses   the holders to look up
+ * @param tokens      the token contracts, defaulting to the loaded ERC20 contract
+ * @param blockNumber the block to read at, defaulting to the current head
+ */
+public record BulkBalanceRequest(List<String> addresses, List<String> tokens, BigInteger blockNumber) {
+}
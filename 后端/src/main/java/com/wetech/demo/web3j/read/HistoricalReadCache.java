@@ -0,0 +1,73 @@
+package com.wetech.demo.web3j.read;
+
+import com.wetech.demo.web3j.address.Address20;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Results of contract reads at final blocks. A read pinned to a block that can no longer be
+ * reorganised always returns the same value, so entries are never invalidated, only evicted
+ * least recently used once {@code web3j.history.cache-size} is reached.
+ */
+@Component
+@RequiredArgsConstructor
+public class HistoricalReadCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${web3j.history.cache-size:100000}")
+    private int maxEntries;
+
+    private final Map<ReadKey, Object> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ReadKey, Object> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * Return the cached result of a read, or run it and cache its result on success
+     * @param contractAddress the contract being read
+     * @param function        the contract function, e.g. {@code balanceOf}
+     * @param arguments       the function arguments; addresses should be passed as {@link Address20}
+     * @param blockNumber     a block that can no longer be reorganised
+     * @param call            starts the read
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> get(String contractAddress, String function, List<?> arguments,
+                                        long blockNumber, Supplier<CompletableFuture<T>> call) {
+        ReadKey key = new ReadKey(Address20.of(contractAddress), function, arguments, String.valueOf(blockNumber));
+        Object cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            counter(function, true).increment();
+            return CompletableFuture.completedFuture((T) cached);
+        }
+        counter(function, false).increment();
+        return call.get().thenApply(result -> {
+            synchronized (entries) {
+                entries.put(key, result);
+            }
+            return result;
+        });
+    }
+
+    private Counter counter(String function, boolean hit) {
+        return Counter.builder("contract.reads.historical")
+                .description("Reads pinned to a final block, split into cache hits and reads sent on")
+                .tag("function", function)
+                .tag("cached", String.valueOf(hit))
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,86 @@
+package com.wetech.demo.web3j.read;
+
+import com.wetech.demo.web3j.address.Address20;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight deduplication of contract reads: while a call is in flight, identical
+ * calls (same contract, function, arguments and block tag) share its result instead of
+ * reaching the node. Nothing is cached once the call completes.
+ * <p>
+ * Records {@code contract.reads}, tagged {@code coalesced=false} for calls sent to the
+ * node and {@code coalesced=true} for calls that joined one already in flight.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReadCoalescer {
+
+    /** Block tag of reads against the head of the chain. */
+    public static final String LATEST = DefaultBlockParameterName.LATEST.getValue();
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<ReadKey, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run a read, or join the identical one already in flight
+     * @param contract        the contract type, e.g. {@code SimpleStorage}
+     * @param contractAddress the contract being read
+     * @param function        the contract function, e.g. {@code balanceOf}
+     * @param arguments       the function arguments; addresses should be passed as {@link Address20}
+     * @param blockTag        the block the read is evaluated at
+     * @param call            starts the read
+     * @return a future completed with the shared result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> coalesce(String contract, String contractAddress, String function,
+                                             List<?> arguments, String blockTag,
+                                             Supplier<CompletableFuture<T>> call) {
+        ReadKey key = new ReadKey(Address20.of(contractAddress), function, arguments, blockTag);
+        CompletableFuture<T> leader = new CompletableFuture<>();
+        CompletableFuture<?> existing = inFlight.putIfAbsent(key, leader);
+        if (existing != null) {
+            counter(contract, function, true).increment();
+            // callers get their own copy so cancelling one cannot fail the others
+            return ((CompletableFuture<T>) existing).copy();
+        }
+        counter(contract, function, false).increment();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, leader);
+            leader.completeExceptionally(e);
+            throw e;
+        }
+        future.whenComplete((result, ex) -> {
+            // unregister first so reads arriving after completion fetch fresh state
+            inFlight.remove(key, leader);
+            if (ex != null) {
+                leader.completeExceptionally(ex);
+            } else {
+                leader.complete(result);
+            }
+        });
+        return leader.copy();
+    }
+
+    private Counter counter(String contract, String function, boolean coalesced) {
+        return Counter.builder("contract.reads")
+                .description("Contract reads, split into those sent to the node and those coalesced with an identical read in flight")
+                .tag("contract", contract)
+                .tag("function", function)
+                .tag("coalesced", String.valueOf(coalesced))
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,11 @@
+package com.wetech.demo.web3j.read;
+
+import com.wetech.demo.web3j.address.Address20;
+
+import java.util.List;
+
+/**
+ * Identifies a contract read: two reads with equal keys return the same result
+ */
+record ReadKey(Address20 contractAddress, String function, List<?> arguments, String blockTag) {
+}
@@ -0,0 +1,214 @@
+package com.wetech.demo.web3j.read;
+
+import com.wetech.demo.web3j.address.Address20;
+import com.wetech.demo.web3j.contracts.simplestorage.SimpleStorage;
+import com.wetech.demo.web3j.event.LogEvent;
+import com.wetech.demo.web3j.event.ReorgAwareLogPipeline;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.disposables.Disposable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.abi.EventEncoder;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * The value of each {@code SimpleStorage} contract, kept in memory and replaced by every
+ * {@code DataChanged} log the {@link ReorgAwareLogPipeline} delivers, so reads need no RPC.
+ * <p>
+ * A value is read from chain only when none is known: on the first read, after a reorg
+ * orphaned the block it was read at or written in, or after the subscription failed. That
+ * read is pinned to the pipeline's tip, whose successors are all delivered to the
+ * subscription, so no change can fall between the read and the logs. While the pipeline is not polling, reads go to
+ * {@code latest} instead of serving a value that may have changed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StorageValueCache {
+
+    private static final String DATA_CHANGED_TOPIC = EventEncoder.encode(SimpleStorage.DATACHANGED_EVENT);
+
+    private final ReorgAwareLogPipeline logPipeline;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${web3j.storage.event-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${web3j.storage.event-cache.max-staleness-ms:10000}")
+    private long maxStalenessMs;
+
+    private final Map<Address20, Entry> entries = new ConcurrentHashMap<>();
+
+    private Disposable reorgSubscription;
+
+    @PostConstruct
+    void init() {
+        // a value read at a tip that is then orphaned has no log to retract it
+        reorgSubscription = logPipeline.reorgs()
+                .subscribe(ancestor -> entries.values().forEach(entry -> entry.orphanAbove(ancestor)));
+    }
+
+    @PreDestroy
+    void close() {
+        reorgSubscription.dispose();
+    }
+
+    /**
+     * @param contractAddress the {@code SimpleStorage} contract
+     * @param readAt          reads the value at a block, used when no value is known
+     * @param readLatest      reads the value at {@code latest}, used while the pipeline is not polling
+     * @return the current value
+     */
+    public CompletableFuture<BigInteger> get(String contractAddress, LongFunction<CompletableFuture<BigInteger>> readAt,
+                                             Supplier<CompletableFuture<BigInteger>> readLatest) {
+        if (!enabled) {
+            return readLatest.get();
+        }
+        Entry entry = entries.computeIfAbsent(Address20.of(contractAddress), Entry::new);
+        if (System.currentTimeMillis() - logPipeline.lastPolledAt() > maxStalenessMs) {
+            count("stale");
+            return readLatest.get();
+        }
+        return entry.get(readAt, readLatest);
+    }
+
+    /**
+     * Apply the {@code DataChanged} logs of a mined {@code set}, so its sender reads its own
+     * write before the pipeline reaches the block. The value is provisional until the pipeline
+     * delivers the same log; if the pipeline passes the block without it, the block was
+     * orphaned and the value is read again.
+     */
+    public void observe(String contractAddress, TransactionReceipt receipt) {
+        Entry entry = entries.get(Address20.of(contractAddress));
+        if (entry == null || !receipt.isStatusOK()) {
+            return;
+        }
+        for (SimpleStorage.DataChangedEventResponse event : SimpleStorage.getDataChangedEvents(receipt)) {
+            if (Address20.of(event.log.getAddress()).equals(entry.address)) {
+                entry.offer(new Snapshot(event.newValue, event.log.getBlockNumber().longValueExact(),
+                        event.log.getLogIndex().longValueExact(), true));
+            }
+        }
+    }
+
+    /**
+     * Stop following a contract that is no longer loaded
+     */
+    public void release(String contractAddress) {
+        Entry entry = entries.remove(Address20.of(contractAddress));
+        if (entry != null) {
+            entry.subscription.dispose();
+        }
+    }
+
+    private void count(String source) {
+        meterRegistry.counter("contract.reads.event.cache", "source", source).increment();
+    }
+
+    /**
+     * A value and the position of the write it reflects
+     * @param logIndex    the index of the {@code DataChanged} log in its block, {@link Long#MAX_VALUE}
+     *                    for a value read at the end of the block
+     * @param provisional whether it comes from a receipt the pipeline has not confirmed yet
+     */
+    private record Snapshot(BigInteger value, long block, long logIndex, boolean provisional) {
+
+        boolean precedes(Snapshot other) {
+            return block < other.block || block == other.block && logIndex < other.logIndex;
+        }
+    }
+
+    private final class Entry {
+
+        private final Address20 address;
+        private final Disposable subscription;
+
+        /** Guarded by {@code this}; {@code null} while no value is known */
+        private Snapshot current;
+        /** Incremented by every retraction and reorg, so a read started before one is discarded */
+        private long generation;
+
+        private Entry(Address20 address) {
+            this.address = address;
+            this.subscription = logPipeline.subscribe(address.toString(), DATA_CHANGED_TOPIC, 0)
+                    .subscribe(this::onEvent, this::onError);
+            log.debug("Following DataChanged logs of {}", address);
+        }
+
+        private CompletableFuture<BigInteger> get(LongFunction<CompletableFuture<BigInteger>> readAt,
+                                                  Supplier<CompletableFuture<BigInteger>> readLatest) {
+            long tip = logPipeline.tip();
+            long readGeneration;
+            synchronized (this) {
+                if (current != null && (!current.provisional() || current.block() > tip)) {
+                    count("cache");
+                    return CompletableFuture.completedFuture(current.value());
+                }
+                if (current != null) {
+                    // the pipeline passed the block of an unconfirmed receipt without its log
+                    current = null;
+                }
+                readGeneration = generation;
+            }
+            if (tip < 0) {
+                count("stale");
+                return readLatest.get();
+            }
+            count("chain");
+            return readAt.apply(tip).thenApply(value -> {
+                synchronized (this) {
+                    if (generation == readGeneration) {
+                        offer(new Snapshot(value, tip, Long.MAX_VALUE, false));
+                    }
+                }
+                return value;
+            });
+        }
+
+        private synchronized void offer(Snapshot snapshot) {
+            if (current == null || current.precedes(snapshot)
+                    || current.provisional() && !snapshot.precedes(current)) {
+                current = snapshot;
+            }
+        }
+
+        private synchronized void onEvent(LogEvent event) {
+            if (event.removed()) {
+                log.debug("DataChanged log of {} in block {} retracted, reading the value again",
+                        address, event.blockNumber());
+                current = null;
+                generation++;
+                return;
+            }
+            BigInteger value = SimpleStorage.getDataChangedEventFromLog(event.log()).newValue;
+            offer(new Snapshot(value, event.blockNumber(), event.log().getLogIndex().longValueExact(), false));
+        }
+
+        /**
+         * Forget a value from a block above the common ancestor of a reorg, and any read in flight
+         */
+        private synchronized void orphanAbove(long ancestor) {
+            if (current != null && current.block() > ancestor) {
+                log.debug("Value of {} read in orphaned block {}, reading it again", address, current.block());
+                current = null;
+            }
+            generation++;
+        }
+
+        private void onError(Throwable error) {
+            log.warn("DataChanged subscription of {} failed, resubscribing on the next read", address, error);
+            entries.remove(address, this);
+        }
+    }
+}
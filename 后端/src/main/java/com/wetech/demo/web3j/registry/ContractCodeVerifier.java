@@ -0,0 +1,99 @@
+package com.wetech.demo.web3j.registry;
+
+import com.wetech.demo.web3j.address.Address20;
+import com.wetech.demo.web3j.deploy.DeployableContract;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Checks that an address holds the contract a service is about to load, by matching the hash of
+ * its {@code eth_getCode} against the runtime part of the generated wrappers' {@code BINARY}.
+ * <p>
+ * Results are cached per address, so loading a verified address again costs no RPC; addresses
+ * deployed by this application are known without asking. Malformed addresses are rejected
+ * before any RPC. Empty code is not cached, as the contract may not be mined yet.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContractCodeVerifier {
+
+    /** {@code RETURN INVALID} ending the constructor, followed by the runtime's free memory pointer setup */
+    private static final String RUNTIME_MARKER = "f3fe6080";
+
+    private static final Map<String, DeployableContract> KNOWN_CODE = Arrays.stream(DeployableContract.values())
+            .collect(Collectors.toMap(contract -> runtimeCodeHash(contract.getBinary()), Function.identity()));
+
+    private final Web3j web3j;
+    private final MeterRegistry meterRegistry;
+
+    /** Code hash per address */
+    private final Map<Address20, String> codeHashes = new ConcurrentHashMap<>();
+
+    /**
+     * @param address the contract address
+     * @param type    the expected wrapper class, e.g. {@code SimpleStorage}
+     * @throws IllegalArgumentException if the address is malformed or holds no or other code
+     * @throws UncheckedIOException     if the code could not be fetched
+     */
+    public void verify(String address, String type) {
+        Address20 key = Address20.of(address);
+        String codeHash = codeHashes.get(key);
+        if (codeHash == null) {
+            codeHash = fetchCodeHash(address);
+            codeHashes.put(key, codeHash);
+            meterRegistry.counter("contract.code.verifications", "cached", "false").increment();
+        } else {
+            meterRegistry.counter("contract.code.verifications", "cached", "true").increment();
+        }
+        DeployableContract found = KNOWN_CODE.get(codeHash);
+        if (found == null) {
+            throw new IllegalArgumentException("The code at " + address + " does not match any known contract");
+        }
+        if (!found.getTypeName().equals(type)) {
+            throw new IllegalArgumentException("The contract at " + address + " is " + found.getTypeName()
+                    + ", not " + type);
+        }
+    }
+
+    /**
+     * Record a contract this application deployed, so loading it needs no verification RPC
+     * @param address the contract address
+     * @param binary  the creation code it was deployed with
+     */
+    public void remember(String address, String binary) {
+        codeHashes.put(Address20.of(address), runtimeCodeHash(binary));
+    }
+
+    private String fetchCodeHash(String address) {
+        String code;
+        try {
+            code = web3j.ethGetCode(address, DefaultBlockParameterName.LATEST).send().getCode();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to fetch the code at " + address, e);
+        }
+        if (code == null || code.equals("0x")) {
+            throw new IllegalArgumentException("No contract code at " + address);
+        }
+        return Hash.sha3(code.toLowerCase());
+    }
+
+    private static String runtimeCodeHash(String binary) {
+        int start = binary.indexOf(RUNTIME_MARKER);
+        while (start >= 0 && start % 2 != 0) {
+            start = binary.indexOf(RUNTIME_MARKER, start + 1);
+        }
+        return Hash.sha3("0x" + (start < 0 ? binary : binary.substring(start + 4)).toLowerCase());
+    }
+}
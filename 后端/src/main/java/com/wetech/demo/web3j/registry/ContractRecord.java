@@ -0,0 +1,27 @@
+package com.wetech.demo.web3j.registry;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigInteger;
+import java.time.Instant;
+
+/**
+ * A contract known to the {@link ContractRegistry}
+ * @param type         the wrapper class, e.g. {@code SimpleStorage}
+ * @param address      the contract address
+ * @param deployBlock  the block the contract was deployed in, {@code null} if it was loaded
+ * @param abiVersion   fingerprint of the wrapper's binary, changes whenever the wrapper is regenerated
+ * @param source       how the contract became known
+ * @param registeredAt when the contract was first registered
+ * @param active       whether the service of the type uses this contract
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ContractRecord(String type, String address, BigInteger deployBlock, String abiVersion,
+                             Source source, Instant registeredAt, boolean active) {
+
+    public enum Source { DEPLOYED, LOADED }
+
+    ContractRecord withActive(boolean active) {
+        return new ContractRecord(type, address, deployBlock, abiVersion, source, registeredAt, active);
+    }
+}
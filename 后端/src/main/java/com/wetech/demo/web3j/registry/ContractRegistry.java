@@ -0,0 +1,125 @@
+package com.wetech.demo.web3j.registry;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wetech.demo.web3j.address.Address20;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Hash;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Deployed and loaded contracts, persisted to {@code web3j.registry.path} so the services can
+ * pick up their contracts again after a restart. At most one contract of each type is active,
+ * the one the service of that type uses.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ContractRegistry {
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${web3j.registry.path:data/contracts.json}")
+    private String path;
+
+    /** Keyed by address, in registration order */
+    private final Map<Address20, ContractRecord> contracts = new LinkedHashMap<>();
+
+    @PostConstruct
+    void init() throws IOException {
+        Path file = Path.of(path);
+        if (Files.exists(file)) {
+            List<ContractRecord> records = objectMapper.readValue(file.toFile(), new TypeReference<>() {
+            });
+            records.forEach(record -> contracts.put(Address20.of(record.address()), record));
+        }
+        log.info("Contract registry has {} contracts", contracts.size());
+    }
+
+    /**
+     * Record a contract and make it the active one of its type; registering a known address
+     * again keeps its original details
+     * @param type        the wrapper class, e.g. {@code SimpleStorage}
+     * @param binary      the wrapper's {@code BINARY}
+     * @param address     the contract address
+     * @param deployBlock the block the contract was deployed in, {@code null} if unknown
+     * @param source      how the contract became known
+     */
+    public void register(String type, String binary, String address, BigInteger deployBlock,
+                         ContractRecord.Source source) {
+        register(type, binary, address, deployBlock, source, true);
+    }
+
+    /**
+     * Record a contract; registering a known address again keeps its original details
+     * @param type        the wrapper class, e.g. {@code SimpleStorage}
+     * @param binary      the wrapper's {@code BINARY}
+     * @param address     the contract address
+     * @param deployBlock the block the contract was deployed in, {@code null} if unknown
+     * @param source      how the contract became known
+     * @param activate    whether to make it the active contract of its type
+     */
+    public synchronized void register(String type, String binary, String address, BigInteger deployBlock,
+                                      ContractRecord.Source source, boolean activate) {
+        Address20 key = Address20.of(address);
+        ContractRecord record = contracts.get(key);
+        if (record == null || !record.type().equals(type)) {
+            record = new ContractRecord(type, address, deployBlock, abiVersion(binary), source, Instant.now(), false);
+        }
+        if (activate) {
+            contracts.replaceAll((other, existing) -> existing.type().equals(type) && existing.active()
+                    ? existing.withActive(false)
+                    : existing);
+            record = record.withActive(true);
+        }
+        contracts.put(key, record);
+        save();
+    }
+
+    /**
+     * @param type the wrapper class
+     * @return the active contract of the type
+     */
+    public synchronized Optional<ContractRecord> active(String type) {
+        return contracts.values().stream()
+                .filter(record -> record.type().equals(type) && record.active())
+                .findFirst();
+    }
+
+    public synchronized List<ContractRecord> all() {
+        return List.copyOf(contracts.values());
+    }
+
+    /**
+     * @param binary a wrapper's {@code BINARY}
+     * @return the fingerprint stored as {@link ContractRecord#abiVersion()}
+     */
+    public static String abiVersion(String binary) {
+        return Hash.sha3String(binary).substring(2, 10);
+    }
+
+    private void save() {
+        Path file = Path.of(path);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), contracts.values());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save the contract registry", e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.wetech.demo.web3j.registry;
+
+import com.wetech.demo.web3j.contracts.erc20dl202330550291.ERC20Dl202330550291;
+import com.wetech.demo.web3j.contracts.simplestorage.SimpleStorage;
+import com.wetech.demo.web3j.service.ERC20Service;
+import com.wetech.demo.web3j.service.SimpleStorageService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Restores the active contracts from the {@link ContractRegistry} at startup, which verifies
+ * their code, and warms them up by running every read the endpoints serve in parallel, so
+ * connections, caches and the JIT are hot before the first request. Application runners
+ * complete before the readiness state turns to {@code ACCEPTING_TRAFFIC}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ContractWarmup implements ApplicationRunner {
+
+    private static final String ERC20 = ERC20Dl202330550291.class.getSimpleName();
+    private static final String STORAGE = SimpleStorage.class.getSimpleName();
+
+    private final ContractRegistry registry;
+    private final ERC20Service erc20Service;
+    private final SimpleStorageService storageService;
+
+    @Value("${web3j.registry.warmup-timeout-ms:30000}")
+    private long warmupTimeout;
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        long start = System.nanoTime();
+        List<CompletableFuture<?>> warmups = new ArrayList<>();
+        registry.active(ERC20).ifPresent(record -> {
+            if (restore(record, erc20Service::loadContract)) {
+                warmups.add(erc20Service.name());
+                warmups.add(erc20Service.symbol());
+                warmups.add(erc20Service.decimals());
+                warmups.add(erc20Service.totalSupply());
+            }
+        });
+        registry.active(STORAGE).ifPresent(record -> {
+            if (restore(record, storageService::loadContract)) {
+                warmups.add(storageService.getValue());
+            }
+        });
+        if (warmups.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(warmups.toArray(CompletableFuture[]::new)).get(warmupTimeout, TimeUnit.MILLISECONDS);
+            log.info("Restored and warmed up contracts in {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (ExecutionException e) {
+            log.warn("Contract warm-up failed: {}", e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            log.warn("Contract warm-up did not finish within {} ms", warmupTimeout);
+        }
+    }
+
+    private boolean restore(ContractRecord record, Consumer<String> loader) {
+        try {
+            loader.accept(record.address());
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Not restoring {} at {}: {}", record.type(), record.address(), e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.wetech.demo.web3j.rpc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.Flowable;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link Web3jService} decorator keeping the number of requests in flight to the node
+ * under a {@link VegasLimit} learned from their round-trip times and failures. Requests
+ * beyond the limit wait in a bounded FIFO queue for up to {@code maxWait}; when the queue
+ * is full or the wait expires they fail with {@link LimitExceededException}.
+ * <p>
+ * Batches take one slot but are not sampled, their round trip says little about the
+ * node's queue. Records {@code web3j.rpc.limit}, {@code web3j.rpc.limiter.queue} and
+ * {@code web3j.rpc.limiter.rejected}.
+ */
+public class ConcurrencyLimitedWeb3jService implements Web3jService {
+
+    /** JSON-RPC error code nodes and providers return when rate or capacity limited. */
+    private static final int LIMIT_EXCEEDED_CODE = -32005;
+
+    private final Web3jService delegate;
+    private final VegasLimit limit;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private final Counter rejected;
+    private int inFlight;
+
+    public ConcurrencyLimitedWeb3jService(Web3jService delegate, VegasLimit limit, int queueCapacity,
+                                          long maxWaitMillis, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.limit = limit;
+        this.queueCapacity = queueCapacity;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        Gauge.builder("web3j.rpc.limit", limit, VegasLimit::getLimit)
+                .description("Current adaptive limit of JSON-RPC requests in flight")
+                .register(meterRegistry);
+        // an unsynchronised size is good enough for a gauge and does not let this escape the constructor
+        Gauge.builder("web3j.rpc.limiter.queue", waiters, Deque::size)
+                .description("JSON-RPC requests waiting for a slot under the limit")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("web3j.rpc.limiter.rejected")
+                .description("JSON-RPC requests failed because no slot became free in time")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        int observedInFlight = acquireBlocking();
+        long start = System.nanoTime();
+        try {
+            T response = delegate.send(request, responseType);
+            release(start, observedInFlight, isOverloaded(response), true);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            release(start, observedInFlight, true, true);
+            throw e;
+        }
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        return limited(() -> delegate.sendAsync(request, responseType), true);
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        int observedInFlight = acquireBlocking();
+        long start = System.nanoTime();
+        try {
+            BatchResponse response = delegate.sendBatch(batchRequest);
+            release(start, observedInFlight, false, false);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            release(start, observedInFlight, true, false);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        return limited(() -> delegate.sendBatchAsync(batchRequest), false);
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod,
+                                                              Class<T> responseType) {
+        return delegate.subscribe(request, unsubscribeMethod, responseType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private <T> CompletableFuture<T> limited(Supplier<CompletableFuture<T>> call, boolean sampled) {
+        return acquire().thenCompose(observedInFlight -> {
+            long start = System.nanoTime();
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                release(start, observedInFlight, true, sampled);
+                throw e;
+            }
+            return future.whenComplete((response, ex) -> release(start, observedInFlight,
+                    ex != null || (response instanceof Response<?> rpcResponse && isOverloaded(rpcResponse)), sampled));
+        });
+    }
+
+    /**
+     * @return a future completed with the number of requests in flight once a slot is held
+     */
+    private CompletableFuture<Integer> acquire() {
+        Waiter waiter;
+        synchronized (this) {
+            if (waiters.isEmpty() && inFlight < limit.getLimit()) {
+                return CompletableFuture.completedFuture(++inFlight);
+            }
+            if (waiters.size() >= queueCapacity) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(
+                        new LimitExceededException("JSON-RPC concurrency limit reached and wait queue full"));
+            }
+            waiter = new Waiter(System.nanoTime() + maxWaitNanos);
+            waiters.add(waiter);
+        }
+        // expires the waiter even if no call in flight ever completes, e.g. while the node hangs
+        CompletableFuture.delayedExecutor(maxWaitNanos, TimeUnit.NANOSECONDS).execute(() -> expire(waiter));
+        return waiter.slot;
+    }
+
+    private int acquireBlocking() throws IOException {
+        try {
+            // bounded by the waiter's own expiry
+            return acquire().get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a JSON-RPC slot");
+        }
+    }
+
+    private void release(long start, int observedInFlight, boolean dropped, boolean sampled) {
+        if (sampled) {
+            limit.onSample(System.nanoTime() - start, observedInFlight, dropped);
+        }
+        List<Waiter> expired = new ArrayList<>();
+        List<Runnable> grants = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            long now = System.nanoTime();
+            // the limit may have grown, admit as many waiters as it allows
+            while (!waiters.isEmpty() && inFlight < limit.getLimit()) {
+                Waiter waiter = waiters.poll();
+                if (waiter.deadline - now < 0) {
+                    expired.add(waiter);
+                } else {
+                    int grantedInFlight = ++inFlight;
+                    grants.add(() -> waiter.slot.complete(grantedInFlight));
+                }
+            }
+        }
+        // completed outside the lock, granted requests are sent from this thread
+        expired.forEach(waiter -> {
+            rejected.increment();
+            waiter.slot.completeExceptionally(
+                    new LimitExceededException("No JSON-RPC slot became free within the maximum wait"));
+        });
+        grants.forEach(Runnable::run);
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            if (!waiters.remove(waiter)) {
+                // granted, or already expired by a release
+                return;
+            }
+        }
+        rejected.increment();
+        waiter.slot.completeExceptionally(
+                new LimitExceededException("No JSON-RPC slot became free within the maximum wait"));
+    }
+
+    private static boolean isOverloaded(Response<?> response) {
+        return response != null && response.hasError() && response.getError().getCode() == LIMIT_EXCEEDED_CODE;
+    }
+
+    private record Waiter(long deadline, CompletableFuture<Integer> slot) {
+
+        Waiter(long deadline) {
+            this(deadline, new CompletableFuture<>());
+        }
+    }
+}
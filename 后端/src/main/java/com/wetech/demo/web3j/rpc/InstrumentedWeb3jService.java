@@ -0,0 +1,182 @@
+package com.wetech.demo.web3j.rpc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.reactivex.Flowable;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link Web3jService} decorator recording, per JSON-RPC method, a latency histogram
+ * ({@code web3j.rpc.requests}), the number of requests in flight
+ * ({@code web3j.rpc.in.flight}) and transport / JSON-RPC errors ({@code web3j.rpc.errors}).
+ */
+public class InstrumentedWeb3jService implements Web3jService {
+
+    static final String BATCH_METHOD = "batch";
+
+    private final Web3jService delegate;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, MethodMeters> meters = new ConcurrentHashMap<>();
+
+    public InstrumentedWeb3jService(Web3jService delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        MethodMeters methodMeters = meters(request.getMethod());
+        long start = methodMeters.begin();
+        try {
+            T response = delegate.send(request, responseType);
+            methodMeters.end(start, response);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            methodMeters.fail(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        MethodMeters methodMeters = meters(request.getMethod());
+        long start = methodMeters.begin();
+        CompletableFuture<T> future;
+        try {
+            future = delegate.sendAsync(request, responseType);
+        } catch (RuntimeException e) {
+            methodMeters.fail(start, e);
+            throw e;
+        }
+        return future.whenComplete((response, ex) -> {
+            if (ex != null) {
+                methodMeters.fail(start, ex);
+            } else {
+                methodMeters.end(start, response);
+            }
+        });
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        MethodMeters methodMeters = meters(BATCH_METHOD);
+        long start = methodMeters.begin();
+        try {
+            BatchResponse response = delegate.sendBatch(batchRequest);
+            methodMeters.end(start, null);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            methodMeters.fail(start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        MethodMeters methodMeters = meters(BATCH_METHOD);
+        long start = methodMeters.begin();
+        CompletableFuture<BatchResponse> future;
+        try {
+            future = delegate.sendBatchAsync(batchRequest);
+        } catch (RuntimeException e) {
+            methodMeters.fail(start, e);
+            throw e;
+        }
+        return future.whenComplete((response, ex) -> {
+            if (ex != null) {
+                methodMeters.fail(start, ex);
+            } else {
+                methodMeters.end(start, null);
+            }
+        });
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod,
+                                                              Class<T> responseType) {
+        return delegate.subscribe(request, unsubscribeMethod, responseType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private MethodMeters meters(String method) {
+        return meters.computeIfAbsent(method, MethodMeters::new);
+    }
+
+    private final class MethodMeters {
+
+        private final String method;
+        private final Timer success;
+        private final Timer error;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private MethodMeters(String method) {
+            this.method = method;
+            this.success = timer(method, "success");
+            this.error = timer(method, "error");
+            Gauge.builder("web3j.rpc.in.flight", inFlight, AtomicInteger::get)
+                    .description("JSON-RPC requests currently awaiting a response")
+                    .tag("method", method)
+                    .register(meterRegistry);
+        }
+
+        private long begin() {
+            inFlight.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        private void end(long start, Response<?> response) {
+            if (response != null && response.hasError()) {
+                record(start, error);
+                errorCounter("rpc-" + response.getError().getCode()).increment();
+            } else {
+                record(start, success);
+            }
+        }
+
+        private void fail(long start, Throwable ex) {
+            record(start, error);
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            errorCounter(cause.getClass().getSimpleName()).increment();
+        }
+
+        private void record(long start, Timer timer) {
+            inFlight.decrementAndGet();
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        private Counter errorCounter(String type) {
+            return Counter.builder("web3j.rpc.errors")
+                    .tag("method", method)
+                    .tag("type", type)
+                    .register(meterRegistry);
+        }
+
+        private Timer timer(String method, String outcome) {
+            return Timer.builder("web3j.rpc.requests")
+                    .description("JSON-RPC round-trip latency")
+                    .tag("method", method)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+}
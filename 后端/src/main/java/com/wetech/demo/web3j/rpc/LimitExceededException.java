@@ -0,0 +1,13 @@
+package com.wetech.demo.web3j.rpc;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a JSON-RPC request could not get a slot under the adaptive concurrency limit.
+ */
+public class LimitExceededException extends IOException {
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
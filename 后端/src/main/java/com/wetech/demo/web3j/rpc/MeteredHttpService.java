@@ -0,0 +1,61 @@
+package com.wetech.demo.web3j.rpc;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.web3j.protocol.http.HttpService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link HttpService} recording request and response payload sizes per JSON-RPC method
+ * ({@code web3j.rpc.request.size} / {@code web3j.rpc.response.size}).
+ * <p>
+ * Sizes are taken here rather than in {@link InstrumentedWeb3jService} because this is
+ * the only layer that sees the serialized payload.
+ */
+public class MeteredHttpService extends HttpService {
+
+    private static final String METHOD_FIELD = "\"method\":\"";
+
+    private final MeterRegistry meterRegistry;
+
+    public MeteredHttpService(String url, MeterRegistry meterRegistry) {
+        super(url);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected InputStream performIO(String request) throws IOException {
+        String method = methodOf(request);
+        // hex-encoded JSON-RPC payloads are ASCII, so the length is the byte count
+        summary("web3j.rpc.request.size", method).record(request.length());
+        InputStream response = super.performIO(request);
+        if (response != null) {
+            // HttpService buffers the whole body, so available() is the payload size
+            summary("web3j.rpc.response.size", method).record(response.available());
+        }
+        return response;
+    }
+
+    private DistributionSummary summary(String name, String method) {
+        return DistributionSummary.builder(name)
+                .baseUnit("bytes")
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    static String methodOf(String request) {
+        if (request.startsWith("[")) {
+            return InstrumentedWeb3jService.BATCH_METHOD;
+        }
+        int start = request.indexOf(METHOD_FIELD);
+        if (start < 0) {
+            return "unknown";
+        }
+        start += METHOD_FIELD.length();
+        int end = request.indexOf('"', start);
+        return end < 0 ? "unknown" : request.substring(start, end);
+    }
+}
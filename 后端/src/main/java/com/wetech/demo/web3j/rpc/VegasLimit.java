@@ -0,0 +1,80 @@
+package com.wetech.demo.web3j.rpc;
+
+/**
+ * TCP Vegas style concurrency limit: the no-load round-trip time is tracked as the
+ * minimum observed RTT, the node-side queue is estimated as
+ * {@code limit * (1 - rttNoLoad / rtt)}, and the limit grows while that queue stays
+ * short and shrinks when it grows. Transport failures cut the limit multiplicatively
+ * (AIMD). The baseline is re-measured periodically so the limit can follow a node whose
+ * capacity changes.
+ */
+public class VegasLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int PROBE_MULTIPLIER = 30;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private long rttNoLoad;
+    private long samplesUntilProbe;
+
+    public VegasLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.samplesUntilProbe = nextProbe();
+    }
+
+    /**
+     * Update the limit with a completed request
+     * @param rttNanos the round-trip time
+     * @param inFlight requests in flight when it was sent
+     * @param dropped  whether it failed in a way that signals overload
+     */
+    public synchronized void onSample(long rttNanos, int inFlight, boolean dropped) {
+        if (dropped) {
+            // failures are often fast, they must not become the no-load baseline
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            return;
+        }
+        if (--samplesUntilProbe <= 0) {
+            // forget the baseline so a slower (or faster) node is picked up
+            rttNoLoad = rttNanos;
+            samplesUntilProbe = nextProbe();
+            return;
+        }
+        if (rttNoLoad == 0 || rttNanos < rttNoLoad) {
+            rttNoLoad = rttNanos;
+            return;
+        }
+        if (inFlight * 2 < limit) {
+            // not using the current limit, the sample says nothing about a higher one
+            return;
+        }
+        double newLimit;
+        double logLimit = Math.max(1, Math.log10(limit));
+        double queueSize = Math.ceil(limit * (1 - (double) rttNoLoad / rttNanos));
+        if (queueSize <= logLimit) {
+            newLimit = limit + 6 * logLimit;
+        } else if (queueSize < 3 * logLimit) {
+            newLimit = limit + logLimit;
+        } else if (queueSize > 6 * logLimit) {
+            newLimit = limit - logLimit;
+        } else {
+            return;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    private long nextProbe() {
+        return (long) (PROBE_MULTIPLIER * Math.max(limit, 1) * (1 + Math.random()));
+    }
+}
@@ -1,26 +1,66 @@
 package com.wetech.demo.web3j.service;
 
+import com.wetech.demo.web3j.address.Address20;
+import com.wetech.demo.web3j.admission.AdmissionScheduler;
+import com.wetech.demo.web3j.admission.WorkClass;
 import com.wetech.demo.web3j.contracts.erc20dl202330550291.ERC20Dl202330550291;
+import com.wetech.demo.web3j.event.ReorgAwareLogPipeline;
+import com.wetech.demo.web3j.event.TransferEvent;
+import com.wetech.demo.web3j.ledger.LedgerIndexer;
+import com.wetech.demo.web3j.metrics.ContractCallMetrics;
+import com.wetech.demo.web3j.read.HistoricalReadCache;
+import com.wetech.demo.web3j.read.ReadCoalescer;
+import com.wetech.demo.web3j.registry.ContractCodeVerifier;
+import com.wetech.demo.web3j.registry.ContractRecord;
+import com.wetech.demo.web3j.registry.ContractRegistry;
+import com.wetech.demo.web3j.tx.TransactionSubmitter;
+import com.wetech.demo.web3j.tx.TxOutbox;
+import com.wetech.demo.web3j.tx.TxTicket;
+import com.wetech.demo.web3j.tx.TxTrace;
+import com.wetech.demo.web3j.tx.TxTracer;
+import io.reactivex.Flowable;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.web3j.abi.EventEncoder;
 import org.web3j.crypto.Credentials;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.RemoteFunctionCall;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.tx.Contract;
 import org.web3j.tx.gas.ContractGasProvider;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ERC20Service {
 
+    private static final String CONTRACT_NAME = ERC20Dl202330550291.class.getSimpleName();
+
     private final Web3j web3j;
     private final Credentials credentials;
     private final ContractGasProvider gasProvider;
+    private final ContractCallMetrics callMetrics;
+    private final AdmissionScheduler admissionScheduler;
+    private final ReadCoalescer readCoalescer;
+    private final ReorgAwareLogPipeline logPipeline;
+    private final TransactionSubmitter transactionSubmitter;
+    private final TxOutbox outbox;
+    private final TxTracer txTracer;
+    private final ContractRegistry registry;
+    private final ContractCodeVerifier codeVerifier;
+    private final LedgerIndexer ledgerIndexer;
+    private final HistoricalReadCache historicalReadCache;
 
     private ERC20Dl202330550291 contract;
 
@@ -32,12 +72,18 @@ public class ERC20Service {
      */
     public CompletableFuture<String> deployContract() {
         log.info("Deploying ERC20Dl202330550291 contract...");
-        return ERC20Dl202330550291.deploy(web3j, credentials, gasProvider)
-                .sendAsync()
-                .thenApply(deployedContract -> {
-                    this.contract = deployedContract;
-                    this.contractAddress = deployedContract.getContractAddress();
+        TxTrace trace = txTracer.start(Contract.FUNC_DEPLOY);
+        return admissionScheduler.submit(WorkClass.ADMIN,
+                        () -> callMetrics.record(CONTRACT_NAME, Contract.FUNC_DEPLOY,
+                                () -> transactionSubmitter.deploy(ERC20Dl202330550291.BINARY, trace)),
+                        trace.submitted())
+                .thenApply(receipt -> {
+                    this.contract = ERC20Dl202330550291.load(receipt.getContractAddress(), web3j, credentials, gasProvider);
+                    this.contractAddress = receipt.getContractAddress();
                     log.info("ERC20 contract deployed to: {}", contractAddress);
+                    codeVerifier.remember(contractAddress, ERC20Dl202330550291.BINARY);
+                    registry.register(CONTRACT_NAME, ERC20Dl202330550291.BINARY, contractAddress, receipt.getBlockNumber(),
+                            ContractRecord.Source.DEPLOYED);
                     return contractAddress;
                 });
     }
@@ -47,8 +93,10 @@ public class ERC20Service {
      */
     public void loadContract(String contractAddress) {
         log.info("Loading ERC20 contract from address: {}", contractAddress);
+        codeVerifier.verify(contractAddress, CONTRACT_NAME);
         this.contract = ERC20Dl202330550291.load(contractAddress, web3j, credentials, gasProvider);
         this.contractAddress = contractAddress;
+        registry.register(CONTRACT_NAME, ERC20Dl202330550291.BINARY, contractAddress, null, ContractRecord.Source.LOADED);
     }
 
     /**
@@ -56,7 +104,7 @@ public class ERC20Service {
      */
     public CompletableFuture<String> name() {
         validateContract();
-        return contract.name().sendAsync();
+        return read(ERC20Dl202330550291.FUNC_NAME, List.of(), () -> contract.name().sendAsync());
     }
 
     /**
@@ -64,7 +112,7 @@ public class ERC20Service {
      */
     public CompletableFuture<String> symbol() {
         validateContract();
-        return contract.symbol().sendAsync();
+        return read(ERC20Dl202330550291.FUNC_SYMBOL, List.of(), () -> contract.symbol().sendAsync());
     }
 
     /**
@@ -72,7 +120,7 @@ public class ERC20Service {
      */
     public CompletableFuture<BigInteger> decimals() {
         validateContract();
-        return contract.decimals().sendAsync();
+        return read(ERC20Dl202330550291.FUNC_DECIMALS, List.of(), () -> contract.decimals().sendAsync());
     }
 
     /**
@@ -80,7 +128,7 @@ public class ERC20Service {
      */
     public CompletableFuture<BigInteger> totalSupply() {
         validateContract();
-        return contract.totalSupply().sendAsync();
+        return read(ERC20Dl202330550291.FUNC_TOTALSUPPLY, List.of(), () -> contract.totalSupply().sendAsync());
     }
 
     /**
@@ -88,26 +136,56 @@ public class ERC20Service {
      */
     public CompletableFuture<BigInteger> balanceOf(String address) {
         validateContract();
+        List<Address20> arguments;
+        try {
+            arguments = addresses(address);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
         log.info("Querying balance for address: {}", address);
-        return contract.balanceOf(address).sendAsync();
+        return read(ERC20Dl202330550291.FUNC_BALANCEOF, arguments,
+                () -> contract.balanceOf(address).sendAsync());
+    }
+
+    /**
+     * 查询账户在指定区块的余额，优先由本地转账索引计算
+     */
+    public CompletableFuture<BigInteger> balanceOf(String address, long blockNumber) {
+        validateContract();
+        if (blockNumber < 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid block number: " + blockNumber));
+        }
+        List<Address20> arguments;
+        try {
+            arguments = addresses(address);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        log.info("Querying balance for address: {} at block {}", address, blockNumber);
+        Optional<BigInteger> indexed = ledgerIndexer.balanceAt(contractAddress, address, blockNumber);
+        if (indexed.isPresent()) {
+            return CompletableFuture.completedFuture(indexed.get());
+        }
+        return readAt(ERC20Dl202330550291.FUNC_BALANCEOF, arguments, blockNumber,
+                pinned -> pinned.balanceOf(address).sendAsync());
     }
 
     /**
      * 转账
      */
-    public CompletableFuture<TransactionReceipt> transfer(String to, BigInteger value) {
+    public TxTicket transfer(String to, BigInteger value, TxTrace trace) {
         validateContract();
         log.info("Transferring {} tokens to {}", value, to);
-        return contract.transfer(to, value).sendAsync();
+        return send(ERC20Dl202330550291.FUNC_TRANSFER, contract.transfer(to, value), trace);
     }
 
     /**
      * 授权额度
      */
-    public CompletableFuture<TransactionReceipt> approve(String spender, BigInteger value) {
+    public TxTicket approve(String spender, BigInteger value, TxTrace trace) {
         validateContract();
         log.info("Approving {} tokens for spender {}", value, spender);
-        return contract.approve(spender, value).sendAsync();
+        return send(ERC20Dl202330550291.FUNC_APPROVE, contract.approve(spender, value), trace);
     }
 
     /**
@@ -115,35 +193,112 @@ public class ERC20Service {
      */
     public CompletableFuture<BigInteger> allowance(String owner, String spender) {
         validateContract();
+        List<Address20> arguments;
+        try {
+            arguments = addresses(owner, spender);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
         log.info("Querying allowance from {} to {}", owner, spender);
-        return contract.allowance(owner, spender).sendAsync();
+        return read(ERC20Dl202330550291.FUNC_ALLOWANCE, arguments,
+                () -> contract.allowance(owner, spender).sendAsync());
+    }
+
+    /**
+     * 查询指定区块的授权额度
+     */
+    public CompletableFuture<BigInteger> allowance(String owner, String spender, long blockNumber) {
+        validateContract();
+        if (blockNumber < 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid block number: " + blockNumber));
+        }
+        List<Address20> arguments;
+        try {
+            arguments = addresses(owner, spender);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        log.info("Querying allowance from {} to {} at block {}", owner, spender, blockNumber);
+        return readAt(ERC20Dl202330550291.FUNC_ALLOWANCE, arguments, blockNumber, pinned -> pinned.allowance(owner, spender).sendAsync());
     }
 
     /**
      * 从授权账户转账
      */
-    public CompletableFuture<TransactionReceipt> transferFrom(String from, String to, BigInteger value) {
+    public TxTicket transferFrom(String from, String to, BigInteger value, TxTrace trace) {
         validateContract();
         log.info("Transferring {} tokens from {} to {}", value, from, to);
-        return contract.transferFrom(from, to, value).sendAsync();
+        return send(ERC20Dl202330550291.FUNC_TRANSFERFROM, contract.transferFrom(from, to, value), trace);
     }
 
     /**
      * 铸币（需要合约权限）
      */
-    public CompletableFuture<TransactionReceipt> mint(BigInteger value) {
+    public TxTicket mint(BigInteger value, TxTrace trace) {
         validateContract();
         log.info("Minting {} new tokens", value);
-        return contract.mint(value).sendAsync();
+        return send(ERC20Dl202330550291.FUNC_MINT, contract.mint(value), trace);
     }
 
     /**
      * 销毁代币
      */
-    public CompletableFuture<TransactionReceipt> burn(BigInteger value) {
+    public TxTicket burn(BigInteger value, TxTrace trace) {
         validateContract();
         log.info("Burning {} tokens", value);
-        return contract.burn(value).sendAsync();
+        return send(ERC20Dl202330550291.FUNC_BURN, contract.burn(value), trace);
+    }
+
+    /**
+     * 订阅 Transfer 事件
+     *
+     * @param confirmations 0 表示跟随最新区块（链重组时会收到撤回事件），N 表示在其后出块 N 个后才推送
+     */
+    public Flowable<TransferEvent> transferEvents(int confirmations) {
+        validateContract();
+        return logPipeline.subscribe(contractAddress, EventEncoder.encode(ERC20Dl202330550291.TRANSFER_EVENT), confirmations)
+                .map(TransferEvent::of);
+    }
+
+    private <T> CompletableFuture<T> read(String function, List<?> arguments, Supplier<CompletableFuture<T>> call) {
+        return readCoalescer.coalesce(CONTRACT_NAME, contractAddress, function, arguments, ReadCoalescer.LATEST,
+                () -> admissionScheduler.submit(WorkClass.READ,
+                        () -> callMetrics.record(CONTRACT_NAME, function, call)));
+    }
+
+    /**
+     * Read at a past block through a wrapper pinned to it, so the shared wrapper keeps reading
+     * {@code latest}; results at final blocks are cached for good
+     */
+    private <T> CompletableFuture<T> readAt(String function, List<?> arguments, long blockNumber,
+                                            Function<ERC20Dl202330550291, CompletableFuture<T>> call) {
+        String address = contractAddress;
+        Supplier<CompletableFuture<T>> load = () -> readCoalescer.coalesce(CONTRACT_NAME, address, function,
+                arguments, String.valueOf(blockNumber),
+                () -> admissionScheduler.submit(WorkClass.READ,
+                        () -> callMetrics.record(CONTRACT_NAME, function, () -> {
+                            ERC20Dl202330550291 pinned = ERC20Dl202330550291.load(address, web3j, credentials, gasProvider);
+                            pinned.setDefaultBlockParameter(DefaultBlockParameter.valueOf(BigInteger.valueOf(blockNumber)));
+                            return call.apply(pinned);
+                        })));
+        return blockNumber <= ledgerIndexer.finalizedBlock()
+                ? historicalReadCache.get(address, function, arguments, blockNumber, load)
+                : load.get();
+    }
+
+    private TxTicket send(String function, RemoteFunctionCall<TransactionReceipt> call, TxTrace trace) {
+        return outbox.submit(CONTRACT_NAME, function, contractAddress, call.encodeFunctionCall(), trace);
+    }
+
+    /**
+     * Parse and checksum-validate addresses, so every spelling of one address shares a read key
+     */
+    private static List<Address20> addresses(String... addresses) {
+        List<Address20> parsed = new ArrayList<>(addresses.length);
+        for (String address : addresses) {
+            parsed.add(Address20.of(address));
+        }
+        return parsed;
     }
 
     private void validateContract() {
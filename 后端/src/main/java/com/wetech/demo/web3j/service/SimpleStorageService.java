@@ -1,27 +1,64 @@
 package com.wetech.demo.web3j.service;
 
+import com.wetech.demo.web3j.admission.AdmissionScheduler;
+import com.wetech.demo.web3j.admission.WorkClass;
 import com.wetech.demo.web3j.contracts.simplestorage.SimpleStorage;
+import com.wetech.demo.web3j.metrics.ContractCallMetrics;
+import com.wetech.demo.web3j.read.ReadCoalescer;
+import com.wetech.demo.web3j.read.StorageValueCache;
+import com.wetech.demo.web3j.registry.ContractCodeVerifier;
+import com.wetech.demo.web3j.registry.ContractRecord;
+import com.wetech.demo.web3j.registry.ContractRegistry;
+import com.wetech.demo.web3j.tx.TransactionSubmitter;
+import com.wetech.demo.web3j.tx.TxOutbox;
+import com.wetech.demo.web3j.tx.TxTicket;
+import com.wetech.demo.web3j.tx.TxTrace;
+import com.wetech.demo.web3j.tx.TxTracer;
+import com.wetech.demo.web3j.tx.WriteCoalescer;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.web3j.crypto.Credentials;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.tx.Contract;
 import org.web3j.tx.gas.ContractGasProvider;
 
 import java.math.BigInteger;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SimpleStorageService {
 
+    private static final String CONTRACT_NAME = SimpleStorage.class.getSimpleName();
+
     private final Web3j web3j;
     private final Credentials credentials;
     private final ContractGasProvider gasProvider;
-    
+    private final ContractCallMetrics callMetrics;
+    private final AdmissionScheduler admissionScheduler;
+    private final ReadCoalescer readCoalescer;
+    private final StorageValueCache valueCache;
+    private final TransactionSubmitter transactionSubmitter;
+    private final TxOutbox outbox;
+    private final TxTracer txTracer;
+    private final ContractRegistry registry;
+    private final ContractCodeVerifier codeVerifier;
+    private final WriteCoalescer writeCoalescer;
+
+    @Value("${web3j.storage.coalesce.enabled:false}")
+    private boolean coalesce;
+
+    @Value("${web3j.storage.coalesce.window-ms:200}")
+    private long coalesceWindowMs;
+
     private SimpleStorage contract;
     /**
      * -- GETTER --
@@ -38,12 +75,19 @@ public class SimpleStorageService {
      */
     public CompletableFuture<String> deployContract() {
         log.info("Deploying SimpleStorage contract...");
-        return SimpleStorage.deploy(web3j, credentials, gasProvider)
-                .sendAsync()
-                .thenApply(contract -> {
-                    this.contract = contract;
-                    this.contractAddress = contract.getContractAddress();
+        TxTrace trace = txTracer.start(Contract.FUNC_DEPLOY);
+        return admissionScheduler.submit(WorkClass.ADMIN,
+                        () -> callMetrics.record(CONTRACT_NAME, Contract.FUNC_DEPLOY,
+                                () -> transactionSubmitter.deploy(SimpleStorage.BINARY, trace)),
+                        trace.submitted())
+                .thenApply(receipt -> {
+                    release(receipt.getContractAddress());
+                    this.contract = SimpleStorage.load(receipt.getContractAddress(), web3j, credentials, gasProvider);
+                    this.contractAddress = receipt.getContractAddress();
                     log.info("SimpleStorage contract deployed to: {}", contractAddress);
+                    codeVerifier.remember(contractAddress, SimpleStorage.BINARY);
+                    registry.register(CONTRACT_NAME, SimpleStorage.BINARY, contractAddress, receipt.getBlockNumber(),
+                            ContractRecord.Source.DEPLOYED);
                     return contractAddress;
                 });
     }
@@ -51,15 +95,20 @@ public class SimpleStorageService {
     /**
      * Load an existing contract from the blockchain
      * @param contractAddress the address of the contract to load
+     * @throws IllegalArgumentException if the address does not hold a SimpleStorage contract
      */
     public void loadContract(String contractAddress) {
         log.info("Loading SimpleStorage contract from address: {}", contractAddress);
+        codeVerifier.verify(contractAddress, CONTRACT_NAME);
+        release(contractAddress);
         this.contract = SimpleStorage.load(contractAddress, web3j, credentials, gasProvider);
         this.contractAddress = contractAddress;
+        registry.register(CONTRACT_NAME, SimpleStorage.BINARY, contractAddress, null, ContractRecord.Source.LOADED);
     }
 
     /**
-     * Get the current value stored in the contract
+     * Get the current value stored in the contract, served from memory and kept current by its
+     * {@code DataChanged} events
      * @return the stored value
      */
     public CompletableFuture<BigInteger> getValue() {
@@ -67,19 +116,59 @@ public class SimpleStorageService {
             throw new IllegalStateException("Contract not deployed or loaded");
         }
         log.info("Getting value from contract at address: {}", contractAddress);
-        return contract.get().sendAsync();
+        SimpleStorage current = contract;
+        String address = contractAddress;
+        return valueCache.get(address,
+                block -> read(address, String.valueOf(block), () -> {
+                    SimpleStorage pinned = SimpleStorage.load(address, web3j, credentials, gasProvider);
+                    pinned.setDefaultBlockParameter(DefaultBlockParameter.valueOf(BigInteger.valueOf(block)));
+                    return pinned.get().sendAsync();
+                }),
+                () -> read(address, ReadCoalescer.LATEST, () -> current.get().sendAsync()));
     }
 
     /**
-     * Set a new value in the contract
+     * Set a new value in the contract. With {@code web3j.storage.coalesce.enabled}, sets arriving
+     * within the coalescing window or while the previous set is unmined become one transaction
+     * storing the latest value, and all of them share its ticket.
      * @param value the new value to store
-     * @return the transaction receipt
+     * @param trace the lifecycle trace of the transaction
+     * @return the ticket of the durably queued transaction
      */
-    public CompletableFuture<TransactionReceipt> setValue(BigInteger value) {
+    public CompletableFuture<TxTicket> setValue(BigInteger value, TxTrace trace) {
         if (contract == null) {
             throw new IllegalStateException("Contract not deployed or loaded");
         }
         log.info("Setting value {} in contract at address: {}", value, contractAddress);
-        return contract.set(value).sendAsync();
+        String address = contractAddress;
+        String data = contract.set(value).encodeFunctionCall();
+        if (!coalesce) {
+            return CompletableFuture.completedFuture(submitSet(address, data, trace));
+        }
+        return writeCoalescer.submit(address, SimpleStorage.FUNC_SET, coalesceWindowMs, trace,
+                batchTrace -> submitSet(address, data, batchTrace));
+    }
+
+    private TxTicket submitSet(String address, String data, TxTrace trace) {
+        // the stored value does not depend on msg.sender, so any pool account may sign
+        TxTicket ticket = outbox.submitFromAnySender(CONTRACT_NAME, SimpleStorage.FUNC_SET, address, data, trace);
+        ticket.receipt().thenAccept(receipt -> valueCache.observe(address, receipt));
+        return ticket;
+    }
+
+    private CompletableFuture<BigInteger> read(String address, String blockTag,
+                                               Supplier<CompletableFuture<BigInteger>> call) {
+        return readCoalescer.coalesce(CONTRACT_NAME, address, SimpleStorage.FUNC_GET, List.of(), blockTag,
+                () -> admissionScheduler.submit(WorkClass.READ,
+                        () -> callMetrics.record(CONTRACT_NAME, SimpleStorage.FUNC_GET, call)));
+    }
+
+    /**
+     * Stop following the events of the loaded contract when another one replaces it
+     */
+    private void release(String newAddress) {
+        if (contractAddress != null && !contractAddress.equalsIgnoreCase(newAddress)) {
+            valueCache.release(contractAddress);
+        }
     }
 }
\ No newline at end of file
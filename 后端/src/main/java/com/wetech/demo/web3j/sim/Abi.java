@@ -0,0 +1,64 @@
+package com.wetech.demo.web3j.sim;
+
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Minimal ABI helpers for the simulated contracts: static arguments only, which is
+ * all the functions of the supported contracts take.
+ */
+final class Abi {
+
+    static final String ZERO_ADDRESS = "0x0000000000000000000000000000000000000000";
+
+    private static final int SELECTOR_LENGTH = 10;
+    private static final int WORD_LENGTH = 64;
+
+    private Abi() {
+    }
+
+    static String selector(String signature) {
+        return Hash.sha3String(signature).substring(0, SELECTOR_LENGTH);
+    }
+
+    static String selectorOf(String data) {
+        return data.length() < SELECTOR_LENGTH ? "" : data.substring(0, SELECTOR_LENGTH).toLowerCase();
+    }
+
+    static String word(String data, int index) {
+        int start = SELECTOR_LENGTH + index * WORD_LENGTH;
+        if (data.length() < start + WORD_LENGTH) {
+            throw SimulatedRpcException.revert(null);
+        }
+        return data.substring(start, start + WORD_LENGTH);
+    }
+
+    static String address(String data, int index) {
+        return "0x" + word(data, index).substring(WORD_LENGTH - 40).toLowerCase();
+    }
+
+    static BigInteger uint(String data, int index) {
+        return new BigInteger(word(data, index), 16);
+    }
+
+    static String encodeUint(BigInteger value) {
+        return "0x" + Numeric.toHexStringNoPrefixZeroPadded(value, WORD_LENGTH);
+    }
+
+    static String encodeBool(boolean value) {
+        return encodeUint(value ? BigInteger.ONE : BigInteger.ZERO);
+    }
+
+    static String encodeString(String value) {
+        return "0x" + FunctionEncoder.encodeConstructor(List.of(new Utf8String(value)));
+    }
+
+    static String addressTopic(String address) {
+        return "0x" + "0".repeat(24) + Numeric.cleanHexPrefix(address).toLowerCase();
+    }
+}
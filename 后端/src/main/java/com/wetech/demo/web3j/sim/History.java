@@ -0,0 +1,23 @@
+package com.wetech.demo.web3j.sim;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A uint256 slot keeping every value it has had, keyed by the block that wrote it,
+ * so the simulated node can answer calls at historical blocks like an archive node.
+ */
+final class History {
+
+    private final TreeMap<Long, BigInteger> values = new TreeMap<>();
+
+    BigInteger at(long block) {
+        Map.Entry<Long, BigInteger> entry = values.floorEntry(block);
+        return entry == null ? BigInteger.ZERO : entry.getValue();
+    }
+
+    void set(long block, BigInteger value) {
+        values.put(block, value);
+    }
+}
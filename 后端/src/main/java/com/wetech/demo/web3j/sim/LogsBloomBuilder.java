@@ -0,0 +1,34 @@
+package com.wetech.demo.web3j.sim;
+
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+/**
+ * Accumulates the 2048-bit {@code logsBloom} of a receipt or block: every log address
+ * and topic sets three bits taken from the low 11 bits of the first three byte pairs
+ * of its keccak-256 hash. Deliberately independent of {@code event.LogsBloom}, so a
+ * bit-selection bug in the indexer's matcher shows up against these blooms.
+ */
+final class LogsBloomBuilder {
+
+    static final int BLOOM_BYTES = 256;
+
+    private final byte[] bloom = new byte[BLOOM_BYTES];
+
+    void add(SimulatedContract.SimulatedLog log) {
+        add(log.address());
+        log.topics().forEach(this::add);
+    }
+
+    private void add(String hex) {
+        byte[] hash = Hash.sha3(Numeric.hexStringToByteArray(hex));
+        for (int i = 0; i < 6; i += 2) {
+            int bit = ((hash[i] & 0x07) << 8) | (hash[i + 1] & 0xff);
+            bloom[BLOOM_BYTES - 1 - (bit >> 3)] |= (byte) (1 << (bit & 0x07));
+        }
+    }
+
+    byte[] toBytes() {
+        return bloom.clone();
+    }
+}
@@ -0,0 +1,401 @@
+package com.wetech.demo.web3j.sim;
+
+import com.wetech.demo.web3j.contracts.erc20dl202330550291.ERC20Dl202330550291;
+import com.wetech.demo.web3j.contracts.erc20yfp202330552031.ERC20YFP202330552031;
+import com.wetech.demo.web3j.contracts.simplestorage.SimpleStorage;
+import com.wetech.demo.web3j.contracts.ygtoken.YGToken;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.ContractUtils;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.SignedRawTransaction;
+import org.web3j.crypto.TransactionDecoder;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.security.SignatureException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for an Ethereum node, enabled with {@code web3j.simulated.enabled=true}.
+ * <p>
+ * Accepts signed raw transactions into a per-sender mempool and mines them every
+ * {@code web3j.simulated.block-time-ms} (or immediately when the block time is {@code 0}),
+ * executing them against {@link SimulatedContract}s that reproduce the ledger semantics of
+ * the generated wrappers. State is versioned per block, so calls at historical blocks work
+ * as on an archive node.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "web3j.simulated.enabled", havingValue = "true")
+public class SimulatedChain {
+
+    private static final long BASE_GAS = 21_000;
+    private static final long DEPLOY_GAS = 1_200_000;
+    private static final String RUNTIME_MARKER = "f3fe6080";
+    /** The deterministic deployment proxy, deployed at the same address on most public chains */
+    static final String CREATE2_FACTORY = "0x4e59b44847b379578588920ca78fbf26c0b4956c";
+    private static final String CREATE2_FACTORY_CODE = "0x7fffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff"
+            + "ffe03601600081602082378035828234f58015156039578182fd5b8082525050506014600cf3";
+
+    @Getter
+    @Value("${web3j.simulated.chain-id:1337}")
+    private long chainId;
+
+    @Value("${web3j.simulated.block-time-ms:1000}")
+    private long blockTime;
+
+    @Getter
+    @Value("${web3j.simulated.block-gas-limit:30000000}")
+    private long blockGasLimit;
+
+    /** Transactions priced below this stay in the mempool, as under a base fee above their price */
+    @Value("${web3j.simulated.min-gas-price:0}")
+    private BigInteger minGasPrice;
+
+    private final List<SimulatedBlock> blocks = new ArrayList<>();
+    private final Map<String, SimulatedBlock> blocksByHash = new HashMap<>();
+    private final Map<String, SimulatedContract> contracts = new HashMap<>();
+    private final Map<String, BigInteger> nonces = new HashMap<>();
+    private final Map<String, TreeMap<BigInteger, SimulatedTransaction>> mempool = new LinkedHashMap<>();
+    private final Map<String, SimulatedTransaction> transactions = new HashMap<>();
+    private final Map<String, SimulatedReceipt> receipts = new HashMap<>();
+
+    private ScheduledExecutorService miner;
+
+    @PostConstruct
+    void init() {
+        long now = System.currentTimeMillis() / 1000;
+        SimulatedBlock genesis = new SimulatedBlock(0, Hash.sha3String("genesis" + now),
+                "0x" + "0".repeat(64), now, 0, new byte[LogsBloomBuilder.BLOOM_BYTES], List.of());
+        blocks.add(genesis);
+        blocksByHash.put(genesis.hash(), genesis);
+        if (blockTime > 0) {
+            miner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "simulated-miner");
+                thread.setDaemon(true);
+                return thread;
+            });
+            miner.scheduleAtFixedRate(this::mineSafely, blockTime, blockTime, TimeUnit.MILLISECONDS);
+        }
+        log.info("Simulated chain {} started, block time {} ms", chainId, blockTime);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (miner != null) {
+            miner.shutdownNow();
+        }
+    }
+
+    /**
+     * Accept a signed transaction into the mempool
+     * @param rawTransaction the RLP-encoded signed transaction
+     * @return the transaction hash
+     */
+    public synchronized String sendRawTransaction(String rawTransaction) {
+        RawTransaction decoded = TransactionDecoder.decode(rawTransaction);
+        if (!(decoded instanceof SignedRawTransaction signed)) {
+            throw new SimulatedRpcException(SimulatedRpcException.INVALID_PARAMS, "transaction is not signed");
+        }
+        String from;
+        try {
+            from = signed.getFrom().toLowerCase();
+        } catch (SignatureException e) {
+            throw new SimulatedRpcException(SimulatedRpcException.INVALID_PARAMS, "invalid sender: " + e.getMessage());
+        }
+        String hash = Hash.sha3(rawTransaction);
+        if (transactions.containsKey(hash)) {
+            throw new SimulatedRpcException(SimulatedRpcException.SERVER_ERROR, "already known");
+        }
+        BigInteger nonce = decoded.getNonce();
+        if (nonce.compareTo(nonces.getOrDefault(from, BigInteger.ZERO)) < 0) {
+            throw new SimulatedRpcException(SimulatedRpcException.SERVER_ERROR, "nonce too low");
+        }
+        String to = decoded.getTo() == null || Numeric.cleanHexPrefix(decoded.getTo()).isEmpty()
+                ? null
+                : decoded.getTo().toLowerCase();
+        BigInteger gasPrice = Optional.ofNullable(decoded.getGasPrice()).orElse(BigInteger.ZERO);
+
+        TreeMap<BigInteger, SimulatedTransaction> queue = mempool.computeIfAbsent(from, sender -> new TreeMap<>());
+        SimulatedTransaction replaced = queue.get(nonce);
+        if (replaced != null) {
+            // geth requires a 10% price bump to replace a pending transaction
+            if (gasPrice.multiply(BigInteger.TEN).compareTo(replaced.gasPrice().multiply(BigInteger.valueOf(11))) < 0) {
+                throw new SimulatedRpcException(SimulatedRpcException.SERVER_ERROR, "replacement transaction underpriced");
+            }
+            transactions.remove(replaced.hash());
+        }
+        SimulatedTransaction transaction = new SimulatedTransaction(hash, from, to, nonce, gasPrice,
+                decoded.getGasLimit(), Numeric.prependHexPrefix(decoded.getData()));
+        queue.put(nonce, transaction);
+        transactions.put(hash, transaction);
+        if (blockTime <= 0) {
+            mine();
+        }
+        return hash;
+    }
+
+    /**
+     * Mine a block with the executable mempool transactions, one per sender in turn,
+     * until the block gas limit is reached
+     * @return the new block
+     */
+    public synchronized SimulatedBlock mine() {
+        long number = blocks.size();
+        SimulatedBlock parent = blocks.get(blocks.size() - 1);
+        List<Execution> executions = new ArrayList<>();
+        long gasUsed = 0;
+        boolean progress = true;
+        while (progress && gasUsed < blockGasLimit) {
+            progress = false;
+            Iterator<Map.Entry<String, TreeMap<BigInteger, SimulatedTransaction>>> senders = mempool.entrySet().iterator();
+            while (senders.hasNext() && gasUsed < blockGasLimit) {
+                Map.Entry<String, TreeMap<BigInteger, SimulatedTransaction>> sender = senders.next();
+                BigInteger expected = nonces.getOrDefault(sender.getKey(), BigInteger.ZERO);
+                SimulatedTransaction transaction = sender.getValue().get(expected);
+                if (transaction == null || transaction.gasPrice().compareTo(minGasPrice) < 0) {
+                    continue;
+                }
+                sender.getValue().remove(expected);
+                if (sender.getValue().isEmpty()) {
+                    senders.remove();
+                }
+                nonces.put(sender.getKey(), expected.add(BigInteger.ONE));
+                Execution execution = execute(transaction, number);
+                gasUsed += execution.gasUsed();
+                executions.add(execution);
+                progress = true;
+            }
+        }
+
+        long timestamp = Math.max(parent.timestamp(), System.currentTimeMillis() / 1000);
+        StringBuilder seed = new StringBuilder(parent.hash()).append(number).append(timestamp);
+        executions.forEach(execution -> seed.append(execution.transaction().hash()));
+        String hash = Hash.sha3String(seed.toString());
+
+        LogsBloomBuilder blockBloom = new LogsBloomBuilder();
+        List<SimulatedReceipt> blockReceipts = new ArrayList<>(executions.size());
+        long cumulativeGas = 0;
+        long logIndex = 0;
+        for (int index = 0; index < executions.size(); index++) {
+            Execution execution = executions.get(index);
+            cumulativeGas += execution.gasUsed();
+            LogsBloomBuilder bloom = new LogsBloomBuilder();
+            List<MinedLog> logs = new ArrayList<>(execution.logs().size());
+            for (SimulatedContract.SimulatedLog entry : execution.logs()) {
+                logs.add(new MinedLog(entry, execution.transaction().hash(), index, logIndex++, number, hash));
+                bloom.add(entry);
+                blockBloom.add(entry);
+            }
+            SimulatedReceipt receipt = new SimulatedReceipt(execution.transaction(), number, hash, index,
+                    execution.gasUsed(), cumulativeGas, execution.contractAddress(), execution.status(), logs,
+                    bloom.toBytes());
+            blockReceipts.add(receipt);
+            receipts.put(receipt.transaction().hash(), receipt);
+        }
+        SimulatedBlock block = new SimulatedBlock(number, hash, parent.hash(), timestamp, gasUsed,
+                blockBloom.toBytes(), blockReceipts);
+        blocks.add(block);
+        blocksByHash.put(hash, block);
+        return block;
+    }
+
+    private void mineSafely() {
+        try {
+            mine();
+        } catch (RuntimeException e) {
+            log.error("Simulated block production failed", e);
+        }
+    }
+
+    private Execution execute(SimulatedTransaction transaction, long block) {
+        List<SimulatedContract.SimulatedLog> logs = new ArrayList<>();
+        try {
+            if (transaction.to() == null) {
+                String address = ContractUtils.generateContractAddress(transaction.from(), transaction.nonce()).toLowerCase();
+                SimulatedContract contract = instantiate(address, transaction.input(), transaction.from());
+                contracts.put(address, contract);
+                return new Execution(transaction, true, DEPLOY_GAS, address, logs);
+            }
+            if (transaction.to().equals(CREATE2_FACTORY)) {
+                // calldata is a 32-byte salt followed by the creation code
+                byte[] input = Numeric.hexStringToByteArray(transaction.input());
+                if (input.length < 32) {
+                    throw SimulatedRpcException.revert(null);
+                }
+                byte[] salt = Arrays.copyOfRange(input, 0, 32);
+                byte[] initCode = Arrays.copyOfRange(input, 32, input.length);
+                String address = ContractUtils.generateCreate2ContractAddress(CREATE2_FACTORY, salt, initCode).toLowerCase();
+                if (contracts.containsKey(address)) {
+                    throw SimulatedRpcException.revert(null);
+                }
+                contracts.put(address, instantiate(address, Numeric.toHexString(initCode), CREATE2_FACTORY));
+                return new Execution(transaction, true, BASE_GAS + DEPLOY_GAS, null, logs);
+            }
+            SimulatedContract contract = contracts.get(transaction.to());
+            long gas = contract == null ? 0 : contract.execute(transaction.from(), transaction.input(), block, logs);
+            return new Execution(transaction, true, BASE_GAS + gas, null, logs);
+        } catch (SimulatedRpcException e) {
+            log.debug("Simulated transaction {} reverted: {}", transaction.hash(), e.getMessage());
+            return new Execution(transaction, false, BASE_GAS, null, List.of());
+        }
+    }
+
+    private SimulatedContract instantiate(String address, String input, String deployer) {
+        String code = Numeric.cleanHexPrefix(input);
+        if (code.startsWith(ERC20Dl202330550291.BINARY)) {
+            return new SimulatedToken(address, ERC20Dl202330550291.BINARY, SimulatedToken.Flavor.SENDER_MINT,
+                    "ERC20Dl202330550291", "ERC20Dl", deployer);
+        } else if (code.startsWith(ERC20YFP202330552031.BINARY)) {
+            return new SimulatedToken(address, ERC20YFP202330552031.BINARY, SimulatedToken.Flavor.OWNER_MINT,
+                    "ERC20YFP202330552031", "ERC20YFP", deployer);
+        } else if (code.startsWith(YGToken.BINARY)) {
+            return new SimulatedToken(address, YGToken.BINARY, SimulatedToken.Flavor.OWNER_MINT,
+                    "YGToken", "YGT", deployer);
+        } else if (code.startsWith(SimpleStorage.BINARY)) {
+            return new SimulatedStorage(address);
+        }
+        throw SimulatedRpcException.revert("unsupported contract bytecode");
+    }
+
+    public synchronized long blockNumber() {
+        return blocks.size() - 1;
+    }
+
+    public synchronized SimulatedBlock block(long number) {
+        return number >= 0 && number < blocks.size() ? blocks.get((int) number) : null;
+    }
+
+    public synchronized SimulatedBlock block(String hash) {
+        return blocksByHash.get(hash);
+    }
+
+    public synchronized SimulatedReceipt receipt(String transactionHash) {
+        return receipts.get(transactionHash);
+    }
+
+    public synchronized SimulatedTransaction transaction(String transactionHash) {
+        return transactions.get(transactionHash);
+    }
+
+    public synchronized BigInteger transactionCount(String address, boolean pending) {
+        String sender = address.toLowerCase();
+        BigInteger count = nonces.getOrDefault(sender, BigInteger.ZERO);
+        TreeMap<BigInteger, SimulatedTransaction> queue = mempool.get(sender);
+        if (pending && queue != null) {
+            while (queue.containsKey(count)) {
+                count = count.add(BigInteger.ONE);
+            }
+        }
+        return count;
+    }
+
+    public synchronized String call(String from, String to, String data, long block) {
+        SimulatedContract contract = contracts.get(to.toLowerCase());
+        if (contract == null) {
+            return "0x";
+        }
+        return contract.call(from == null ? Abi.ZERO_ADDRESS : from.toLowerCase(), data, block);
+    }
+
+    /**
+     * @return the runtime bytecode of a contract, i.e. its creation code without the constructor
+     */
+    public synchronized String code(String address) {
+        if (address.equalsIgnoreCase(CREATE2_FACTORY)) {
+            return CREATE2_FACTORY_CODE;
+        }
+        SimulatedContract contract = contracts.get(address.toLowerCase());
+        if (contract == null) {
+            return "0x";
+        }
+        String binary = contract.binary();
+        int start = binary.indexOf(RUNTIME_MARKER);
+        while (start >= 0 && start % 2 != 0) {
+            start = binary.indexOf(RUNTIME_MARKER, start + 1);
+        }
+        return "0x" + (start < 0 ? binary : binary.substring(start + 4));
+    }
+
+    /**
+     * @param from      first block, inclusive
+     * @param to        last block, inclusive
+     * @param addresses emitting contracts, empty for any
+     * @param topics    per position, the accepted topics; {@code null} or empty accepts anything
+     * @return the matching logs in chain order
+     */
+    public synchronized List<MinedLog> logs(long from, long to, Set<String> addresses, List<Set<String>> topics) {
+        List<MinedLog> result = new ArrayList<>();
+        for (long number = Math.max(from, 0); number <= Math.min(to, blockNumber()); number++) {
+            collectLogs(blocks.get((int) number), addresses, topics, result);
+        }
+        return result;
+    }
+
+    public synchronized List<MinedLog> logs(String blockHash, Set<String> addresses, List<Set<String>> topics) {
+        List<MinedLog> result = new ArrayList<>();
+        SimulatedBlock block = blocksByHash.get(blockHash);
+        if (block != null) {
+            collectLogs(block, addresses, topics, result);
+        }
+        return result;
+    }
+
+    private static void collectLogs(SimulatedBlock block, Set<String> addresses, List<Set<String>> topics,
+                                    List<MinedLog> result) {
+        for (SimulatedReceipt receipt : block.receipts()) {
+            for (MinedLog entry : receipt.logs()) {
+                if (matches(entry.log(), addresses, topics)) {
+                    result.add(entry);
+                }
+            }
+        }
+    }
+
+    private static boolean matches(SimulatedContract.SimulatedLog entry, Set<String> addresses, List<Set<String>> topics) {
+        if (!addresses.isEmpty() && !addresses.contains(entry.address())) {
+            return false;
+        }
+        for (int position = 0; position < topics.size(); position++) {
+            Set<String> accepted = topics.get(position);
+            if (accepted == null || accepted.isEmpty()) {
+                continue;
+            }
+            if (position >= entry.topics().size() || !accepted.contains(entry.topics().get(position))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public record SimulatedTransaction(String hash, String from, String to, BigInteger nonce, BigInteger gasPrice,
+                                       BigInteger gasLimit, String input) {
+    }
+
+    public record MinedLog(SimulatedContract.SimulatedLog log, String transactionHash, int transactionIndex,
+                           long logIndex, long blockNumber, String blockHash) {
+    }
+
+    public record SimulatedReceipt(SimulatedTransaction transaction, long blockNumber, String blockHash,
+                                   int transactionIndex, long gasUsed, long cumulativeGasUsed,
+                                   String contractAddress, boolean status, List<MinedLog> logs, byte[] logsBloom) {
+    }
+
+    public record SimulatedBlock(long number, String hash, String parentHash, long timestamp, long gasUsed,
+                                 byte[] logsBloom, List<SimulatedReceipt> receipts) {
+    }
+
+    private record Execution(SimulatedTransaction transaction, boolean status, long gasUsed, String contractAddress,
+                             List<SimulatedContract.SimulatedLog> logs) {
+    }
+}
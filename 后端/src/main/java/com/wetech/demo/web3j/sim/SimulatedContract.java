@@ -0,0 +1,37 @@
+package com.wetech.demo.web3j.sim;
+
+import java.util.List;
+
+/**
+ * Ledger semantics of a contract deployed on the {@link SimulatedChain}.
+ */
+interface SimulatedContract {
+
+    /**
+     * Execute a read-only call
+     * @param from  the caller
+     * @param data  the encoded function call
+     * @param block the block whose state is read
+     * @return the ABI-encoded return value
+     */
+    String call(String from, String data, long block);
+
+    /**
+     * Execute a transaction; all checks happen before any state is written, so a
+     * {@link SimulatedRpcException} leaves the state untouched
+     * @param from  the sender
+     * @param data  the encoded function call
+     * @param block the block being mined
+     * @param logs  receives the emitted logs
+     * @return the gas used
+     */
+    long execute(String from, String data, long block, List<SimulatedLog> logs);
+
+    /**
+     * @return the creation bytecode the contract was deployed from
+     */
+    String binary();
+
+    record SimulatedLog(String address, List<String> topics, String data) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.wetech.demo.web3j.sim;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * Exposes the simulated node over HTTP so external tools (load generators, scripts,
+ * another instance of this service) can use it as their JSON-RPC endpoint.
+ */
+@RestController
+@ConditionalOnProperty(name = "web3j.simulated.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class SimulatedNodeController {
+
+    private final SimulatedRpcHandler handler;
+
+    /**
+     * JSON-RPC endpoint of the simulated node
+     * @param payload a JSON-RPC request or batch
+     * @return the JSON-RPC response
+     */
+    @PostMapping(value = "/sim/rpc", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public String rpc(@RequestBody String payload) throws IOException {
+        return handler.handle(payload);
+    }
+}
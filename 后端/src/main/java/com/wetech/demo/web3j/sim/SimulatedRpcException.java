@@ -0,0 +1,32 @@
+package com.wetech.demo.web3j.sim;
+
+/**
+ * A JSON-RPC error returned by the simulated node.
+ */
+public class SimulatedRpcException extends RuntimeException {
+
+    /** Error code geth uses for reverted calls. */
+    static final int EXECUTION_REVERTED = 3;
+
+    static final int INVALID_PARAMS = -32602;
+
+    static final int METHOD_NOT_FOUND = -32601;
+
+    static final int SERVER_ERROR = -32000;
+
+    private final int code;
+
+    public SimulatedRpcException(int code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    static SimulatedRpcException revert(String reason) {
+        return new SimulatedRpcException(EXECUTION_REVERTED,
+                reason == null ? "execution reverted" : "execution reverted: " + reason);
+    }
+
+    public int getCode() {
+        return code;
+    }
+}
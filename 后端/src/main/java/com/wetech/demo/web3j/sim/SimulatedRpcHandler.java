@@ -0,0 +1,298 @@
+package com.wetech.demo.web3j.sim;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * JSON-RPC front end of the {@link SimulatedChain}, implementing the subset of the
+ * {@code eth_} namespace used by web3j contract wrappers, transaction managers and
+ * log polling. Single requests and batches are both accepted.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "web3j.simulated.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class SimulatedRpcHandler {
+
+    private static final BigInteger DEFAULT_BALANCE = BigInteger.TEN.pow(24);
+    private static final BigInteger PRIORITY_FEE = BigInteger.valueOf(1_000_000_000L);
+    private static final long CALL_GAS = 30_000;
+    private static final long DEPLOY_GAS = 1_500_000;
+
+    private final SimulatedChain chain;
+    private final ObjectMapper objectMapper;
+
+    @Value("${web3j.simulated.latency-ms:0}")
+    private long latency;
+
+    @Value("${web3j.simulated.gas-price:1000000000}")
+    private BigInteger gasPrice;
+
+    /**
+     * Handle a JSON-RPC request or batch
+     * @param payload the request body
+     * @return the response body
+     */
+    public String handle(String payload) throws IOException {
+        simulateLatency();
+        JsonNode request = objectMapper.readTree(payload);
+        if (request.isArray()) {
+            ArrayNode responses = objectMapper.createArrayNode();
+            request.forEach(entry -> responses.add(dispatch(entry)));
+            return objectMapper.writeValueAsString(responses);
+        }
+        return objectMapper.writeValueAsString(dispatch(request));
+    }
+
+    private void simulateLatency() throws IOException {
+        if (latency <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while simulating network latency", e);
+        }
+    }
+
+    private ObjectNode dispatch(JsonNode request) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.path("id"));
+        String method = request.path("method").asText();
+        try {
+            response.set("result", invoke(method, request.path("params")));
+        } catch (SimulatedRpcException e) {
+            error(response, e.getCode(), e.getMessage());
+        } catch (RuntimeException e) {
+            log.warn("Simulated {} failed", method, e);
+            error(response, SimulatedRpcException.INVALID_PARAMS, String.valueOf(e.getMessage()));
+        }
+        return response;
+    }
+
+    private static void error(ObjectNode response, int code, String message) {
+        ObjectNode error = response.putObject("error");
+        error.put("code", code);
+        error.put("message", message);
+    }
+
+    private JsonNode invoke(String method, JsonNode params) {
+        return switch (method) {
+            case "web3_clientVersion" -> TextNode.valueOf("SimulatedChain/v1.0");
+            case "net_version" -> TextNode.valueOf(String.valueOf(chain.getChainId()));
+            case "eth_chainId" -> quantity(chain.getChainId());
+            case "eth_blockNumber" -> quantity(chain.blockNumber());
+            case "eth_gasPrice" -> quantity(gasPrice);
+            case "eth_maxPriorityFeePerGas" -> quantity(PRIORITY_FEE);
+            case "eth_feeHistory" -> feeHistory(params);
+            case "eth_getBalance" -> quantity(DEFAULT_BALANCE);
+            case "eth_getTransactionCount" -> quantity(chain.transactionCount(
+                    params.path(0).asText(), "pending".equals(params.path(1).asText())));
+            case "eth_getCode" -> TextNode.valueOf(chain.code(params.path(0).asText()));
+            case "eth_call" -> call(params);
+            case "eth_estimateGas" -> quantity(params.path(0).hasNonNull("to") ? CALL_GAS : DEPLOY_GAS);
+            case "eth_sendRawTransaction" -> TextNode.valueOf(chain.sendRawTransaction(params.path(0).asText()));
+            case "eth_getTransactionReceipt" -> receipt(chain.receipt(params.path(0).asText()));
+            case "eth_getTransactionByHash" -> transaction(chain.transaction(params.path(0).asText()));
+            case "eth_getBlockByNumber" -> block(blockNumber(params.path(0)), params.path(1).asBoolean());
+            case "eth_getBlockByHash" -> block(chain.block(params.path(0).asText()), params.path(1).asBoolean());
+            case "eth_getLogs" -> logs(params.path(0));
+            default -> throw new SimulatedRpcException(SimulatedRpcException.METHOD_NOT_FOUND,
+                    "the method " + method + " does not exist/is not available");
+        };
+    }
+
+    private JsonNode call(JsonNode params) {
+        JsonNode transaction = params.path(0);
+        String data = transaction.hasNonNull("data")
+                ? transaction.get("data").asText()
+                : transaction.path("input").asText("0x");
+        String from = transaction.hasNonNull("from") ? transaction.get("from").asText() : null;
+        long block = params.path(1).isMissingNode() ? chain.blockNumber() : toBlockNumber(params.path(1));
+        if (block > chain.blockNumber()) {
+            throw new SimulatedRpcException(SimulatedRpcException.SERVER_ERROR, "header not found");
+        }
+        return TextNode.valueOf(chain.call(from, transaction.path("to").asText(), data, block));
+    }
+
+    private JsonNode feeHistory(JsonNode params) {
+        long head = toBlockNumber(params.path(1));
+        long count = Math.min(Math.max(Numeric.decodeQuantity(params.path(0).asText("0x1")).longValue(), 1), head + 1);
+        int percentiles = params.path(2).size();
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("oldestBlock", Numeric.encodeQuantity(BigInteger.valueOf(head - count + 1)));
+        ArrayNode baseFees = result.putArray("baseFeePerGas");
+        ArrayNode ratios = result.putArray("gasUsedRatio");
+        ArrayNode rewards = result.putArray("reward");
+        for (long number = head - count + 1; number <= head; number++) {
+            SimulatedChain.SimulatedBlock block = chain.block(number);
+            baseFees.add(Numeric.encodeQuantity(gasPrice));
+            ratios.add(block == null ? 0 : (double) block.gasUsed() / chain.getBlockGasLimit());
+            ArrayNode reward = rewards.addArray();
+            for (int i = 0; i < percentiles; i++) {
+                reward.add(Numeric.encodeQuantity(PRIORITY_FEE));
+            }
+        }
+        baseFees.add(Numeric.encodeQuantity(gasPrice));
+        return result;
+    }
+
+    private JsonNode logs(JsonNode filter) {
+        Set<String> addresses = new HashSet<>();
+        JsonNode address = filter.path("address");
+        if (address.isArray()) {
+            address.forEach(entry -> addresses.add(entry.asText().toLowerCase()));
+        } else if (address.isTextual()) {
+            addresses.add(address.asText().toLowerCase());
+        }
+        List<Set<String>> topics = new ArrayList<>();
+        for (JsonNode position : filter.path("topics")) {
+            Set<String> accepted = new HashSet<>();
+            if (position.isArray()) {
+                position.forEach(topic -> accepted.add(topic.asText().toLowerCase()));
+            } else if (position.isTextual()) {
+                accepted.add(position.asText().toLowerCase());
+            }
+            topics.add(accepted);
+        }
+        List<SimulatedChain.MinedLog> logs = filter.hasNonNull("blockHash")
+                ? chain.logs(filter.get("blockHash").asText(), addresses, topics)
+                : chain.logs(toBlockNumber(filter.path("fromBlock")), toBlockNumber(filter.path("toBlock")),
+                        addresses, topics);
+        ArrayNode result = objectMapper.createArrayNode();
+        logs.forEach(entry -> result.add(log(entry)));
+        return result;
+    }
+
+    private SimulatedChain.SimulatedBlock blockNumber(JsonNode tag) {
+        return chain.block(toBlockNumber(tag));
+    }
+
+    private long toBlockNumber(JsonNode tag) {
+        String value = tag.asText("latest");
+        return switch (value) {
+            case "", "latest", "pending", "safe", "finalized" -> chain.blockNumber();
+            case "earliest" -> 0;
+            default -> Numeric.decodeQuantity(value).longValue();
+        };
+    }
+
+    private JsonNode block(SimulatedChain.SimulatedBlock block, boolean fullTransactions) {
+        if (block == null) {
+            return NullNode.getInstance();
+        }
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("number", Numeric.encodeQuantity(BigInteger.valueOf(block.number())));
+        result.put("hash", block.hash());
+        result.put("parentHash", block.parentHash());
+        result.put("nonce", "0x0000000000000000");
+        result.put("sha3Uncles", "0x" + "0".repeat(64));
+        result.put("logsBloom", Numeric.toHexString(block.logsBloom()));
+        result.put("transactionsRoot", "0x" + "0".repeat(64));
+        result.put("stateRoot", "0x" + "0".repeat(64));
+        result.put("receiptsRoot", "0x" + "0".repeat(64));
+        result.put("miner", Abi.ZERO_ADDRESS);
+        result.put("difficulty", "0x0");
+        result.put("totalDifficulty", "0x0");
+        result.put("extraData", "0x");
+        result.put("size", "0x0");
+        result.put("gasLimit", Numeric.encodeQuantity(BigInteger.valueOf(chain.getBlockGasLimit())));
+        result.put("gasUsed", Numeric.encodeQuantity(BigInteger.valueOf(block.gasUsed())));
+        result.put("timestamp", Numeric.encodeQuantity(BigInteger.valueOf(block.timestamp())));
+        result.put("baseFeePerGas", Numeric.encodeQuantity(gasPrice));
+        ArrayNode transactions = result.putArray("transactions");
+        for (SimulatedChain.SimulatedReceipt receipt : block.receipts()) {
+            if (fullTransactions) {
+                transactions.add(transaction(receipt.transaction()));
+            } else {
+                transactions.add(receipt.transaction().hash());
+            }
+        }
+        result.putArray("uncles");
+        return result;
+    }
+
+    private JsonNode transaction(SimulatedChain.SimulatedTransaction transaction) {
+        if (transaction == null) {
+            return NullNode.getInstance();
+        }
+        SimulatedChain.SimulatedReceipt receipt = chain.receipt(transaction.hash());
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("hash", transaction.hash());
+        result.put("nonce", Numeric.encodeQuantity(transaction.nonce()));
+        result.put("from", transaction.from());
+        result.put("to", transaction.to());
+        result.put("value", "0x0");
+        result.put("gas", Numeric.encodeQuantity(transaction.gasLimit()));
+        result.put("gasPrice", Numeric.encodeQuantity(transaction.gasPrice()));
+        result.put("input", transaction.input());
+        result.put("type", "0x0");
+        result.put("blockHash", receipt == null ? null : receipt.blockHash());
+        result.put("blockNumber", receipt == null ? null : Numeric.encodeQuantity(BigInteger.valueOf(receipt.blockNumber())));
+        result.put("transactionIndex", receipt == null ? null
+                : Numeric.encodeQuantity(BigInteger.valueOf(receipt.transactionIndex())));
+        return result;
+    }
+
+    private JsonNode receipt(SimulatedChain.SimulatedReceipt receipt) {
+        if (receipt == null) {
+            return NullNode.getInstance();
+        }
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("transactionHash", receipt.transaction().hash());
+        result.put("transactionIndex", Numeric.encodeQuantity(BigInteger.valueOf(receipt.transactionIndex())));
+        result.put("blockHash", receipt.blockHash());
+        result.put("blockNumber", Numeric.encodeQuantity(BigInteger.valueOf(receipt.blockNumber())));
+        result.put("from", receipt.transaction().from());
+        result.put("to", receipt.transaction().to());
+        result.put("cumulativeGasUsed", Numeric.encodeQuantity(BigInteger.valueOf(receipt.cumulativeGasUsed())));
+        result.put("gasUsed", Numeric.encodeQuantity(BigInteger.valueOf(receipt.gasUsed())));
+        result.put("effectiveGasPrice", Numeric.encodeQuantity(receipt.transaction().gasPrice()));
+        result.put("contractAddress", receipt.contractAddress());
+        result.put("status", receipt.status() ? "0x1" : "0x0");
+        result.put("logsBloom", Numeric.toHexString(receipt.logsBloom()));
+        result.put("type", "0x0");
+        ArrayNode logs = result.putArray("logs");
+        receipt.logs().forEach(entry -> logs.add(log(entry)));
+        return result;
+    }
+
+    private JsonNode log(SimulatedChain.MinedLog entry) {
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("removed", false);
+        result.put("logIndex", Numeric.encodeQuantity(BigInteger.valueOf(entry.logIndex())));
+        result.put("transactionIndex", Numeric.encodeQuantity(BigInteger.valueOf(entry.transactionIndex())));
+        result.put("transactionHash", entry.transactionHash());
+        result.put("blockHash", entry.blockHash());
+        result.put("blockNumber", Numeric.encodeQuantity(BigInteger.valueOf(entry.blockNumber())));
+        result.put("address", entry.log().address());
+        result.put("data", entry.log().data());
+        ArrayNode topics = result.putArray("topics");
+        entry.log().topics().forEach(topics::add);
+        return result;
+    }
+
+    private static JsonNode quantity(long value) {
+        return quantity(BigInteger.valueOf(value));
+    }
+
+    private static JsonNode quantity(BigInteger value) {
+        return TextNode.valueOf(Numeric.encodeQuantity(value));
+    }
+}
@@ -0,0 +1,49 @@
+package com.wetech.demo.web3j.sim;
+
+import com.wetech.demo.web3j.contracts.simplestorage.SimpleStorage;
+import org.web3j.abi.EventEncoder;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * {@code SimpleStorage}: {@code set(uint256)} stores a value and emits {@code DataChanged}.
+ */
+final class SimulatedStorage implements SimulatedContract {
+
+    private static final String GET = Abi.selector("get()");
+    private static final String SET = Abi.selector("set(uint256)");
+    private static final String DATA_CHANGED_TOPIC = EventEncoder.encode(SimpleStorage.DATACHANGED_EVENT);
+    private static final long SET_GAS = 43_000;
+
+    private final String address;
+    private final History storedData = new History();
+
+    SimulatedStorage(String address) {
+        this.address = address;
+    }
+
+    @Override
+    public String binary() {
+        return SimpleStorage.BINARY;
+    }
+
+    @Override
+    public String call(String from, String data, long block) {
+        if (Abi.selectorOf(data).equals(GET)) {
+            return Abi.encodeUint(storedData.at(block));
+        }
+        throw SimulatedRpcException.revert(null);
+    }
+
+    @Override
+    public long execute(String from, String data, long block, List<SimulatedLog> logs) {
+        if (!Abi.selectorOf(data).equals(SET)) {
+            throw SimulatedRpcException.revert(null);
+        }
+        String value = Abi.word(data, 0);
+        storedData.set(block, new BigInteger(value, 16));
+        logs.add(new SimulatedLog(address, List.of(DATA_CHANGED_TOPIC), "0x" + value));
+        return SET_GAS;
+    }
+}
@@ -0,0 +1,220 @@
+package com.wetech.demo.web3j.sim;
+
+import com.wetech.demo.web3j.contracts.erc20dl202330550291.ERC20Dl202330550291;
+import org.web3j.abi.EventEncoder;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ERC20 ledger following the Solidity sources of the generated wrappers.
+ * <ul>
+ *     <li>{@link Flavor#SENDER_MINT}: {@code ERC20Dl202330550291}, anyone mints to and burns from
+ *     their own balance with {@code mint(uint256)} / {@code burn(uint256)}.</li>
+ *     <li>{@link Flavor#OWNER_MINT}: {@code ERC20YFP202330552031} and {@code YGToken}, only the
+ *     deployer may call {@code mint(address,uint256)} / {@code burn(address,uint256)}, zero
+ *     addresses are rejected and an allowance of {@code 2^256-1} is never spent.</li>
+ * </ul>
+ */
+final class SimulatedToken implements SimulatedContract {
+
+    enum Flavor { SENDER_MINT, OWNER_MINT }
+
+    private static final String NAME = Abi.selector("name()");
+    private static final String SYMBOL = Abi.selector("symbol()");
+    private static final String DECIMALS = Abi.selector("decimals()");
+    private static final String TOTAL_SUPPLY = Abi.selector("totalSupply()");
+    private static final String BALANCE_OF = Abi.selector("balanceOf(address)");
+    private static final String ALLOWANCE = Abi.selector("allowance(address,address)");
+    private static final String TRANSFER = Abi.selector("transfer(address,uint256)");
+    private static final String APPROVE = Abi.selector("approve(address,uint256)");
+    private static final String TRANSFER_FROM = Abi.selector("transferFrom(address,address,uint256)");
+    private static final String MINT_SELF = Abi.selector("mint(uint256)");
+    private static final String BURN_SELF = Abi.selector("burn(uint256)");
+    private static final String MINT_TO = Abi.selector("mint(address,uint256)");
+    private static final String BURN_FROM = Abi.selector("burn(address,uint256)");
+
+    private static final String TRANSFER_TOPIC = EventEncoder.encode(ERC20Dl202330550291.TRANSFER_EVENT);
+    private static final String APPROVAL_TOPIC = EventEncoder.encode(ERC20Dl202330550291.APPROVAL_EVENT);
+    private static final BigInteger MAX_UINT = BigInteger.TWO.pow(256).subtract(BigInteger.ONE);
+
+    private static final long TRANSFER_GAS = 52_000;
+    private static final long APPROVE_GAS = 46_000;
+    private static final long MINT_GAS = 68_000;
+
+    private final String address;
+    private final String binary;
+    private final Flavor flavor;
+    private final String name;
+    private final String symbol;
+    private final String owner;
+
+    private final Map<String, History> balances = new HashMap<>();
+    private final Map<String, History> allowances = new HashMap<>();
+    private final History totalSupply = new History();
+
+    SimulatedToken(String address, String binary, Flavor flavor, String name, String symbol, String owner) {
+        this.address = address;
+        this.binary = binary;
+        this.flavor = flavor;
+        this.name = name;
+        this.symbol = symbol;
+        this.owner = owner;
+    }
+
+    @Override
+    public String binary() {
+        return binary;
+    }
+
+    @Override
+    public String call(String from, String data, long block) {
+        String selector = Abi.selectorOf(data);
+        if (selector.equals(BALANCE_OF)) {
+            return Abi.encodeUint(read(balances, Abi.address(data, 0), block));
+        } else if (selector.equals(ALLOWANCE)) {
+            return Abi.encodeUint(read(allowances, Abi.address(data, 0) + Abi.address(data, 1), block));
+        } else if (selector.equals(TOTAL_SUPPLY)) {
+            return Abi.encodeUint(totalSupply.at(block));
+        } else if (selector.equals(DECIMALS)) {
+            return Abi.encodeUint(BigInteger.valueOf(18));
+        } else if (selector.equals(NAME)) {
+            return Abi.encodeString(name);
+        } else if (selector.equals(SYMBOL)) {
+            return Abi.encodeString(symbol);
+        }
+        throw SimulatedRpcException.revert(null);
+    }
+
+    @Override
+    public long execute(String from, String data, long block, List<SimulatedLog> logs) {
+        String selector = Abi.selectorOf(data);
+        if (selector.equals(TRANSFER)) {
+            transfer(from, Abi.address(data, 0), Abi.uint(data, 1), block, logs);
+            return TRANSFER_GAS;
+        } else if (selector.equals(APPROVE)) {
+            approve(from, Abi.address(data, 0), Abi.uint(data, 1), block, logs);
+            return APPROVE_GAS;
+        } else if (selector.equals(TRANSFER_FROM)) {
+            transferFrom(from, Abi.address(data, 0), Abi.address(data, 1), Abi.uint(data, 2), block, logs);
+            return TRANSFER_GAS;
+        } else if (flavor == Flavor.SENDER_MINT && selector.equals(MINT_SELF)) {
+            mint(from, Abi.uint(data, 0), block, logs);
+            return MINT_GAS;
+        } else if (flavor == Flavor.SENDER_MINT && selector.equals(BURN_SELF)) {
+            burn(from, Abi.uint(data, 0), block, logs, "ERC20: burn amount exceeds balance");
+            return MINT_GAS;
+        } else if (flavor == Flavor.OWNER_MINT && selector.equals(MINT_TO)) {
+            requireThat(from.equals(owner), "Only owner can mint");
+            String account = Abi.address(data, 0);
+            requireThat(!account.equals(Abi.ZERO_ADDRESS), "Mint to zero address");
+            mint(account, Abi.uint(data, 1), block, logs);
+            return MINT_GAS;
+        } else if (flavor == Flavor.OWNER_MINT && selector.equals(BURN_FROM)) {
+            requireThat(from.equals(owner), "Only owner can burn");
+            String account = Abi.address(data, 0);
+            requireThat(!account.equals(Abi.ZERO_ADDRESS), "Burn from zero address");
+            burn(account, Abi.uint(data, 1), block, logs, null);
+            return MINT_GAS;
+        }
+        throw SimulatedRpcException.revert(null);
+    }
+
+    private void transfer(String from, String to, BigInteger value, long block, List<SimulatedLog> logs) {
+        checkTransfer(from, to, value, block);
+        move(from, to, value, block, logs);
+    }
+
+    private void approve(String owner, String spender, BigInteger value, long block, List<SimulatedLog> logs) {
+        if (flavor == Flavor.OWNER_MINT) {
+            requireThat(!spender.equals(Abi.ZERO_ADDRESS), "Approve to zero address");
+        }
+        setAllowance(owner, spender, value, block, logs);
+    }
+
+    private void transferFrom(String spender, String from, String to, BigInteger value, long block,
+                              List<SimulatedLog> logs) {
+        BigInteger allowed = read(allowances, from + spender, block);
+        if (flavor == Flavor.SENDER_MINT) {
+            requireThat(allowed.compareTo(value) >= 0, "ERC20: transfer amount exceeds allowance");
+            checkTransfer(from, to, value, block);
+            allowance(from, spender).set(block, allowed.subtract(value));
+        } else {
+            boolean infinite = allowed.equals(MAX_UINT);
+            requireThat(infinite || allowed.compareTo(value) >= 0, "Insufficient allowance");
+            checkTransfer(from, to, value, block);
+            if (!infinite) {
+                setAllowance(from, spender, allowed.subtract(value), block, logs);
+            }
+        }
+        move(from, to, value, block, logs);
+    }
+
+    private void mint(String account, BigInteger value, long block, List<SimulatedLog> logs) {
+        totalSupply.set(block, totalSupply.at(block).add(value));
+        History balance = balance(account);
+        balance.set(block, balance.at(block).add(value));
+        logs.add(transferLog(Abi.ZERO_ADDRESS, account, value));
+    }
+
+    private void burn(String account, BigInteger value, long block, List<SimulatedLog> logs, String reason) {
+        requireThat(read(balances, account, block).compareTo(value) >= 0, reason);
+        History balance = balance(account);
+        balance.set(block, balance.at(block).subtract(value));
+        totalSupply.set(block, totalSupply.at(block).subtract(value));
+        logs.add(transferLog(account, Abi.ZERO_ADDRESS, value));
+    }
+
+    private void checkTransfer(String from, String to, BigInteger value, long block) {
+        if (flavor == Flavor.OWNER_MINT) {
+            requireThat(!from.equals(Abi.ZERO_ADDRESS), "Transfer from zero address");
+            requireThat(!to.equals(Abi.ZERO_ADDRESS), "Transfer to zero address");
+            // checked subtraction panics without a reason string
+            requireThat(read(balances, from, block).compareTo(value) >= 0, null);
+        } else {
+            requireThat(read(balances, from, block).compareTo(value) >= 0, "ERC20: transfer amount exceeds balance");
+        }
+    }
+
+    private void move(String from, String to, BigInteger value, long block, List<SimulatedLog> logs) {
+        History source = balance(from);
+        source.set(block, source.at(block).subtract(value));
+        History target = balance(to);
+        target.set(block, target.at(block).add(value));
+        logs.add(transferLog(from, to, value));
+    }
+
+    private void setAllowance(String owner, String spender, BigInteger value, long block, List<SimulatedLog> logs) {
+        allowance(owner, spender).set(block, value);
+        logs.add(new SimulatedLog(address,
+                List.of(APPROVAL_TOPIC, Abi.addressTopic(owner), Abi.addressTopic(spender)),
+                Abi.encodeUint(value)));
+    }
+
+    private SimulatedLog transferLog(String from, String to, BigInteger value) {
+        return new SimulatedLog(address,
+                List.of(TRANSFER_TOPIC, Abi.addressTopic(from), Abi.addressTopic(to)),
+                Abi.encodeUint(value));
+    }
+
+    private History balance(String account) {
+        return balances.computeIfAbsent(account, key -> new History());
+    }
+
+    private History allowance(String owner, String spender) {
+        return allowances.computeIfAbsent(owner + spender, key -> new History());
+    }
+
+    private static BigInteger read(Map<String, History> slots, String key, long block) {
+        History history = slots.get(key);
+        return history == null ? BigInteger.ZERO : history.at(block);
+    }
+
+    private static void requireThat(boolean condition, String reason) {
+        if (!condition) {
+            throw SimulatedRpcException.revert(reason);
+        }
+    }
+}
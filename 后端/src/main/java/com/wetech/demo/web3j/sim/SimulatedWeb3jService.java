@@ -0,0 +1,31 @@
+package com.wetech.demo.web3j.sim;
+
+import org.web3j.protocol.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Web3j transport that hands requests straight to the in-process {@link SimulatedRpcHandler}
+ * instead of going over HTTP.
+ */
+public class SimulatedWeb3jService extends Service {
+
+    private final SimulatedRpcHandler handler;
+
+    public SimulatedWeb3jService(SimulatedRpcHandler handler) {
+        super(false);
+        this.handler = handler;
+    }
+
+    @Override
+    protected InputStream performIO(String payload) throws IOException {
+        return new ByteArrayInputStream(handler.handle(payload).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,111 @@
+package com.wetech.demo.web3j.tx;
+
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Hands out sequential nonces for one sender, querying the node only when the
+ * local counter is unknown (at startup or after {@link #resync()}).
+ * <p>
+ * Every nonce handed out stays outstanding until the node accepted it ({@link #confirm}) or
+ * it was never sent ({@link #release}). A released nonce is handed out again before any new
+ * one, so a rejected transaction does not leave a gap behind transactions sent after it; the
+ * counter is only refetched from the node once nothing is outstanding.
+ */
+public class NonceManager {
+
+    private final Web3j web3j;
+    private final String address;
+    private final NavigableSet<BigInteger> outstanding = new TreeSet<>();
+    private final NavigableSet<BigInteger> released = new TreeSet<>();
+    private BigInteger next;
+
+    public NonceManager(Web3j web3j, String address) {
+        this.web3j = web3j;
+        this.address = address;
+    }
+
+    /**
+     * Take the lowest released nonce, or the next one of the counter
+     * @return the nonce, outstanding until confirmed or released
+     */
+    public synchronized BigInteger next() throws IOException {
+        BigInteger nonce = released.pollFirst();
+        if (nonce == null) {
+            return reserve(1);
+        }
+        outstanding.add(nonce);
+        return nonce;
+    }
+
+    /**
+     * Reserve a contiguous range of nonces, e.g. to know the addresses of contract creations
+     * before they are signed
+     * @param count the number of nonces
+     * @return the first nonce of the range, each outstanding until confirmed or released
+     */
+    public synchronized BigInteger reserve(int count) throws IOException {
+        if (next == null) {
+            EthGetTransactionCount response = web3j.ethGetTransactionCount(address, DefaultBlockParameterName.PENDING)
+                    .send();
+            if (response.hasError()) {
+                throw new IOException("Error fetching the nonce of " + address + ": " + response.getError().getMessage());
+            }
+            next = response.getTransactionCount();
+        }
+        BigInteger nonce = next;
+        next = next.add(BigInteger.valueOf(count));
+        for (BigInteger reserved = nonce; reserved.compareTo(next) < 0; reserved = reserved.add(BigInteger.ONE)) {
+            outstanding.add(reserved);
+        }
+        return nonce;
+    }
+
+    /**
+     * Record that a transaction with this nonce reached the node, or may have
+     * @param nonce a nonce from {@link #next} or {@link #reserve}
+     */
+    public synchronized void confirm(BigInteger nonce) {
+        outstanding.remove(nonce);
+    }
+
+    /**
+     * Hand back a nonce no transaction was sent with, e.g. after the node rejected it
+     * @param nonce a nonce from {@link #next} or {@link #reserve}
+     */
+    public synchronized void release(BigInteger nonce) {
+        if (!outstanding.remove(nonce)) {
+            return;
+        }
+        released.add(nonce);
+        // released nonces at the top of the counter are simply not handed out yet
+        while (next != null && released.remove(next.subtract(BigInteger.ONE))) {
+            next = next.subtract(BigInteger.ONE);
+        }
+        if (outstanding.isEmpty() && released.isEmpty()) {
+            // nothing in flight, so the node's pending count is exact and may correct a drifted counter
+            next = null;
+        }
+    }
+
+    /**
+     * Refetch the counter from the node before the next nonce, unless nonces are outstanding,
+     * e.g. after transactions signed before a restart were re-broadcast
+     */
+    public synchronized void resync() {
+        if (outstanding.isEmpty()) {
+            next = null;
+            released.clear();
+        }
+    }
+
+    public String getAddress() {
+        return address;
+    }
+}
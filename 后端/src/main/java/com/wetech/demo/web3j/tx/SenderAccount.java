@@ -0,0 +1,56 @@
+package com.wetech.demo.web3j.tx;
+
+import lombok.Getter;
+import org.web3j.crypto.Credentials;
+import org.web3j.protocol.Web3j;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A key in the {@link SenderPool} with its own nonce stream.
+ */
+public class SenderAccount {
+
+    @Getter
+    private final Credentials credentials;
+    @Getter
+    private final NonceManager nonceManager;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile BigInteger balance;
+
+    SenderAccount(Credentials credentials, Web3j web3j) {
+        this.credentials = credentials;
+        this.nonceManager = new NonceManager(web3j, credentials.getAddress());
+    }
+
+    public String getAddress() {
+        return credentials.getAddress();
+    }
+
+    /**
+     * @return the number of transactions sent from this account and not yet mined
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the last balance read from the node in wei, {@code null} before the first check
+     */
+    public BigInteger getBalance() {
+        return balance;
+    }
+
+    void acquire() {
+        inFlight.incrementAndGet();
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    void setBalance(BigInteger balance) {
+        this.balance = balance;
+    }
+}
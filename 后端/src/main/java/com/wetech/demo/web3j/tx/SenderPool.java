@@ -0,0 +1,163 @@
+package com.wetech.demo.web3j.tx;
+
+import com.wetech.demo.web3j.address.Address20;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.WalletUtils;
+import org.web3j.crypto.exception.CipherException;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.utils.Convert;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Sender accounts for contract writes: the primary {@link Credentials} bean plus the keys
+ * listed in {@code web3j.senders.private-keys} and the wallet files in
+ * {@code web3j.senders.keystore-dir}.
+ * <p>
+ * Writes that depend on {@code msg.sender} (token transfers, deployments) use the primary
+ * account; sender-independent writes go to the least-loaded funded account, so their nonce
+ * streams advance in parallel. Balances are checked periodically and accounts below
+ * {@code web3j.senders.low-balance-wei} are skipped while another account is funded.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SenderPool {
+
+    private final Web3j web3j;
+    private final Credentials credentials;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${web3j.senders.private-keys:}")
+    private List<String> privateKeys;
+
+    @Value("${web3j.senders.keystore-dir:}")
+    private String keystoreDir;
+
+    @Value("${web3j.senders.keystore-password:}")
+    private String keystorePassword;
+
+    @Value("${web3j.senders.low-balance-wei:100000000000000000}")
+    private BigInteger lowBalance;
+
+    private final Map<Address20, SenderAccount> accounts = new LinkedHashMap<>();
+    private SenderAccount primary;
+
+    @PostConstruct
+    void init() throws IOException {
+        primary = add(credentials);
+        for (String privateKey : privateKeys) {
+            if (!privateKey.isBlank()) {
+                add(Credentials.create(privateKey.trim()));
+            }
+        }
+        if (!keystoreDir.isBlank()) {
+            try (Stream<Path> files = Files.list(Path.of(keystoreDir))) {
+                for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                    try {
+                        add(WalletUtils.loadCredentials(keystorePassword, file.toFile()));
+                    } catch (CipherException | IOException e) {
+                        log.warn("Skipping keystore file {}: {}", file, e.getMessage());
+                    }
+                }
+            }
+        }
+        log.info("Sender pool has {} accounts, primary {}", accounts.size(), primary.getAddress());
+    }
+
+    /**
+     * @return the account of the {@link Credentials} bean, used for sender-dependent writes
+     */
+    public SenderAccount primary() {
+        return primary;
+    }
+
+    /**
+     * @param address the sender address
+     * @return the pool account with that address
+     * @throws IllegalArgumentException if the address is not in the pool
+     */
+    public SenderAccount account(String address) {
+        SenderAccount account = accounts.get(Address20.of(address));
+        if (account == null) {
+            throw new IllegalArgumentException("Sender " + address + " is not in the sender pool");
+        }
+        return account;
+    }
+
+    /**
+     * @return the funded account with the fewest unmined transactions, or the least-loaded
+     * account if none is funded
+     */
+    public SenderAccount leastLoaded() {
+        Comparator<SenderAccount> load = Comparator.comparingInt(SenderAccount::getInFlight);
+        return accounts.values().stream()
+                .filter(account -> !isLow(account))
+                .min(load)
+                .orElseGet(() -> accounts.values().stream().min(load).orElseThrow());
+    }
+
+    public Collection<SenderAccount> accounts() {
+        return Collections.unmodifiableCollection(accounts.values());
+    }
+
+    @Scheduled(fixedDelayString = "${web3j.senders.balance-check-interval-ms:60000}")
+    void checkBalances() {
+        for (SenderAccount account : accounts.values()) {
+            web3j.ethGetBalance(account.getAddress(), DefaultBlockParameterName.LATEST).sendAsync()
+                    .whenComplete((response, ex) -> {
+                        if (ex != null || response.hasError()) {
+                            log.debug("Balance check of sender {} failed", account.getAddress());
+                            return;
+                        }
+                        boolean wasLow = isLow(account);
+                        account.setBalance(response.getBalance());
+                        if (isLow(account) && !wasLow) {
+                            log.warn("Sender {} is low on funds: {} ETH", account.getAddress(),
+                                    Convert.fromWei(response.getBalance().toString(), Convert.Unit.ETHER));
+                        }
+                    });
+        }
+    }
+
+    private boolean isLow(SenderAccount account) {
+        BigInteger balance = account.getBalance();
+        return balance != null && balance.compareTo(lowBalance) < 0;
+    }
+
+    private SenderAccount add(Credentials credentials) {
+        Address20 key = Address20.of(credentials.getAddress());
+        if (accounts.containsKey(key)) {
+            return accounts.get(key);
+        }
+        String address = key.toString();
+        SenderAccount account = new SenderAccount(credentials, web3j);
+        accounts.put(key, account);
+        Gauge.builder("tx.sender.in.flight", account, SenderAccount::getInFlight)
+                .tag("address", address)
+                .description("Transactions sent from the account and not yet mined")
+                .register(meterRegistry);
+        Gauge.builder("tx.sender.balance", account,
+                        sender -> sender.getBalance() == null ? Double.NaN
+                                : Convert.fromWei(sender.getBalance().toString(), Convert.Unit.ETHER).doubleValue())
+                .tag("address", address)
+                .baseUnit("ether")
+                .description("Last observed balance of the sender account")
+                .register(meterRegistry);
+        return account;
+    }
+}
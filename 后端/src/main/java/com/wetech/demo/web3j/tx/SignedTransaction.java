@@ -0,0 +1,18 @@
+package com.wetech.demo.web3j.tx;
+
+import java.math.BigInteger;
+
+/**
+ * A signed transaction ready to broadcast, with the fields needed to re-sign it
+ * @param from     the sender
+ * @param nonce    the sender nonce
+ * @param to       the contract called, or {@code null} for a deployment
+ * @param data     the encoded call or contract binary
+ * @param gasPrice the gas price it was signed with
+ * @param gasLimit the gas limit it was signed with
+ * @param hash     the transaction hash
+ * @param raw      the signed, RLP-encoded transaction
+ */
+public record SignedTransaction(String from, BigInteger nonce, String to, String data, BigInteger gasPrice,
+                                BigInteger gasLimit, String hash, String raw) {
+}
@@ -0,0 +1,14 @@
+package com.wetech.demo.web3j.tx;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a transaction can never be mined: the node refused it, or its nonce was used
+ * by another transaction. Unlike other send failures it is never worth re-broadcasting.
+ */
+public class TransactionRejectedException extends IOException {
+
+    public TransactionRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,479 @@
+package com.wetech.demo.web3j.tx;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.exceptions.TransactionException;
+import org.web3j.tx.gas.ContractGasProvider;
+import org.web3j.utils.Async;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Signs and sends contract transactions, then polls for their receipts without
+ * blocking a thread per pending transaction. Every step is recorded on the
+ * transaction's {@link TxTrace}.
+ * <p>
+ * A transaction left unmined for {@code web3j.tx.replacement.stuck-after-ms} is re-signed
+ * with the same nonce and a bumped gas price, one replacement at a time; the caller's
+ * future completes with the receipt of whichever version gets mined.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransactionSubmitter {
+
+    private static final BigInteger HUNDRED = BigInteger.valueOf(100);
+
+    private final Web3j web3j;
+    private final SenderPool senderPool;
+    private final ContractGasProvider gasProvider;
+    private final TaskScheduler taskScheduler;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${web3j.chain-id:-1}")
+    private long chainId;
+
+    @Value("${web3j.tx.receipt-poll-interval-ms:1000}")
+    private long receiptPollInterval;
+
+    @Value("${web3j.tx.receipt-timeout-ms:300000}")
+    private long receiptTimeout;
+
+    @Value("${web3j.tx.send-batch-size:50}")
+    private int sendBatchSize;
+
+    @Value("${web3j.tx.replacement.enabled:true}")
+    private boolean replacementEnabled;
+
+    @Value("${web3j.tx.replacement.stuck-after-ms:60000}")
+    private long stuckAfter;
+
+    @Value("${web3j.tx.replacement.bump-percent:15}")
+    private int bumpPercent;
+
+    @Value("${web3j.tx.replacement.max-gas-price:200000000000}")
+    private BigInteger maxGasPrice;
+
+    private final Set<PendingTransaction> pending = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("tx.pending", pending, Set::size)
+                .description("Transactions sent and not yet mined")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Send a transaction calling a contract
+     * @param to    the contract address
+     * @param data  the encoded function call
+     * @param trace the lifecycle trace of the transaction
+     * @return the receipt, completed exceptionally if the transaction reverted
+     */
+    public CompletableFuture<TransactionReceipt> submit(String to, String data, TxTrace trace) {
+        return submit(to, data, trace, signed -> {
+        });
+    }
+
+    /**
+     * Send a transaction calling a contract from the primary sender
+     * @param to         the contract address
+     * @param data       the encoded function call
+     * @param trace      the lifecycle trace of the transaction
+     * @param beforeSend receives every signed version of the transaction before it is broadcast,
+     *                   e.g. to persist it; if it throws, that version is not sent
+     * @return the receipt, completed exceptionally if the transaction reverted
+     */
+    public CompletableFuture<TransactionReceipt> submit(String to, String data, TxTrace trace,
+                                                        Consumer<SignedTransaction> beforeSend) {
+        return submit(senderPool.primary(), to, data, trace, beforeSend);
+    }
+
+    /**
+     * Send a transaction calling a contract
+     * @param sender     the signing account
+     * @param to         the contract address
+     * @param data       the encoded function call
+     * @param trace      the lifecycle trace of the transaction
+     * @param beforeSend receives every signed version of the transaction before it is broadcast,
+     *                   e.g. to persist it; if it throws, that version is not sent
+     * @return the receipt, completed exceptionally if the transaction reverted
+     */
+    public CompletableFuture<TransactionReceipt> submit(SenderAccount sender, String to, String data, TxTrace trace,
+                                                        Consumer<SignedTransaction> beforeSend) {
+        NonceManager nonceManager = sender.getNonceManager();
+        sender.acquire();
+        return track(sender, Async.run(() -> {
+            BigInteger nonce = nonceManager.next();
+            trace.mark(TxStage.NONCE_ASSIGNED);
+            SignedTransaction signed;
+            try {
+                signed = sign(sender, nonce, gasProvider.getGasPrice(), gasProvider.getGasLimit(), to, data);
+                trace.mark(TxStage.SIGNED);
+                beforeSend.accept(signed);
+            } catch (RuntimeException e) {
+                // nothing was sent, the next transaction reuses the nonce
+                nonceManager.release(nonce);
+                throw e;
+            }
+            broadcast(sender, signed, trace);
+            return new PendingTransaction(signed, beforeSend, Instant.now().plusMillis(stuckAfter));
+        }), trace);
+    }
+
+    /**
+     * Send a contract creation transaction from the primary sender
+     * @param binary the contract binary, including encoded constructor arguments
+     * @param trace  the lifecycle trace of the transaction
+     * @return the receipt, carrying the new contract address
+     */
+    public CompletableFuture<TransactionReceipt> deploy(String binary, TxTrace trace) {
+        return submit(null, binary, trace);
+    }
+
+    /**
+     * Sign transactions with a contiguous range of nonces reserved up front, so their order and
+     * any contract creation addresses are known before anything is sent
+     * @param sender the signing account
+     * @param calls  the transactions, in nonce order
+     * @param traces the lifecycle trace of each transaction
+     * @return the signed transactions, to be passed to {@link #sendAll}
+     */
+    public List<SignedTransaction> prepare(SenderAccount sender, List<Call> calls, List<TxTrace> traces)
+            throws IOException {
+        BigInteger nonce = sender.getNonceManager().reserve(calls.size());
+        BigInteger gasPrice = gasProvider.getGasPrice();
+        BigInteger gasLimit = gasProvider.getGasLimit();
+        List<SignedTransaction> signed = new ArrayList<>(calls.size());
+        for (int index = 0; index < calls.size(); index++) {
+            traces.get(index).mark(TxStage.NONCE_ASSIGNED);
+            Call call = calls.get(index);
+            signed.add(sign(sender, nonce.add(BigInteger.valueOf(index)), gasPrice, gasLimit, call.to(), call.data()));
+            traces.get(index).mark(TxStage.SIGNED);
+        }
+        return signed;
+    }
+
+    /**
+     * Broadcast prepared transactions back to back in JSON-RPC batches and track them together
+     * @param sender       the account that signed the transactions
+     * @param transactions the transactions from {@link #prepare}
+     * @param traces       the lifecycle trace of each transaction
+     * @return the receipt of each transaction, completed exceptionally if it was rejected or reverted
+     */
+    public List<CompletableFuture<TransactionReceipt>> sendAll(SenderAccount sender,
+                                                              List<SignedTransaction> transactions,
+                                                              List<TxTrace> traces) {
+        List<CompletableFuture<PendingTransaction>> sent = new ArrayList<>(transactions.size());
+        List<CompletableFuture<TransactionReceipt>> receipts = new ArrayList<>(transactions.size());
+        for (int index = 0; index < transactions.size(); index++) {
+            sent.add(new CompletableFuture<>());
+            sender.acquire();
+            receipts.add(track(sender, sent.get(index), traces.get(index)));
+        }
+        Async.run(() -> {
+            for (int from = 0; from < transactions.size(); from += sendBatchSize) {
+                int to = Math.min(from + sendBatchSize, transactions.size());
+                BatchRequest batch = web3j.newBatch();
+                transactions.subList(from, to).forEach(signed -> batch.add(web3j.ethSendRawTransaction(signed.raw())));
+                try {
+                    List<? extends Response<?>> responses = batch.send().getResponses();
+                    for (int index = from; index < to; index++) {
+                        Response<?> response = responses.get(index - from);
+                        if (response.hasError()) {
+                            // the next transaction reuses the nonce, filling the gap before the rest of the batch
+                            sender.getNonceManager().release(transactions.get(index).nonce());
+                            sent.get(index).completeExceptionally(new TransactionRejectedException(
+                                    "Error processing transaction request: " + response.getError().getMessage()));
+                        } else {
+                            sender.getNonceManager().confirm(transactions.get(index).nonce());
+                            traces.get(index).mark(TxStage.SUBMITTED);
+                            sent.get(index).complete(new PendingTransaction(transactions.get(index), signed -> {
+                            }, Instant.now().plusMillis(stuckAfter)));
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // the node may have received the batch, so its nonces are not reused
+                    transactions.subList(from, to).forEach(signed -> sender.getNonceManager().confirm(signed.nonce()));
+                    sent.subList(from, to).forEach(future -> future.completeExceptionally(e));
+                }
+            }
+            return null;
+        });
+        return receipts;
+    }
+
+    /**
+     * Re-broadcast a transaction signed before a restart and track it to its receipt. The
+     * broadcast happens before this method returns, so nonces assigned afterwards follow it;
+     * rejections are ignored as the node may already know or have mined the transaction.
+     * @param versions   every signed version of the transaction, the latest replacement last
+     * @param trace      the lifecycle trace of the transaction
+     * @param beforeSend receives further replacements before they are broadcast
+     * @return the receipt of whichever version is mined, completed exceptionally if it reverted
+     */
+    public CompletableFuture<TransactionReceipt> resume(List<SignedTransaction> versions, TxTrace trace,
+                                                        Consumer<SignedTransaction> beforeSend) {
+        SignedTransaction latest = versions.get(versions.size() - 1);
+        SenderAccount sender = senderPool.account(latest.from());
+        sender.acquire();
+        try {
+            EthSendTransaction response = web3j.ethSendRawTransaction(latest.raw()).send();
+            if (response.hasError()) {
+                log.debug("Re-broadcast of {} rejected: {}", latest.hash(), response.getError().getMessage());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Re-broadcast of {} failed, waiting for its receipt anyway", latest.hash(), e);
+        }
+        trace.mark(TxStage.SUBMITTED);
+        sender.getNonceManager().resync();
+        PendingTransaction transaction = new PendingTransaction(versions.get(0), beforeSend,
+                Instant.now().plusMillis(stuckAfter));
+        versions.subList(1, versions.size()).forEach(version -> transaction.replaced(version, transaction.stuckAt));
+        return track(sender, CompletableFuture.completedFuture(transaction), trace);
+    }
+
+    /**
+     * Replace transactions that have been waiting longer than the stuck deadline
+     */
+    @Scheduled(fixedDelayString = "${web3j.tx.replacement.check-interval-ms:5000}")
+    void replaceStuck() {
+        if (!replacementEnabled) {
+            return;
+        }
+        Instant now = Instant.now();
+        for (PendingTransaction transaction : pending) {
+            if (now.isAfter(transaction.stuckAt) && transaction.replacing.compareAndSet(false, true)) {
+                replace(transaction);
+            }
+        }
+    }
+
+    private void replace(PendingTransaction transaction) {
+        SignedTransaction latest = transaction.latest();
+        BigInteger gasPrice = latest.gasPrice().multiply(HUNDRED.add(BigInteger.valueOf(bumpPercent)))
+                .add(HUNDRED.subtract(BigInteger.ONE))
+                .divide(HUNDRED)
+                .min(maxGasPrice);
+        if (gasPrice.compareTo(latest.gasPrice()) <= 0) {
+            log.warn("Transaction {} with nonce {} is stuck at the maximum gas price {}",
+                    latest.hash(), latest.nonce(), maxGasPrice);
+            transaction.retryAt(Instant.now().plusMillis(stuckAfter));
+            return;
+        }
+        SignedTransaction replacement;
+        try {
+            replacement = sign(senderPool.account(latest.from()), latest.nonce(), gasPrice, latest.gasLimit(), latest.to(), latest.data());
+            transaction.beforeSend.accept(replacement);
+        } catch (RuntimeException e) {
+            log.warn("Failed to prepare a replacement for transaction {}", latest.hash(), e);
+            transaction.retryAt(Instant.now().plusMillis(stuckAfter));
+            return;
+        }
+        web3j.ethSendRawTransaction(replacement.raw()).sendAsync().whenComplete((response, ex) -> {
+            if (ex == null && !response.hasError()) {
+                log.warn("Replaced stuck transaction {} with {}, nonce {}, gas price {} -> {}",
+                        latest.hash(), replacement.hash(), latest.nonce(), latest.gasPrice(), gasPrice);
+                meterRegistry.counter("tx.replacements", "outcome", "sent").increment();
+                transaction.replaced(replacement, Instant.now().plusMillis(stuckAfter));
+            } else {
+                // "nonce too low" means one of the versions was mined and the next poll will find it
+                log.warn("Replacement of transaction {} rejected: {}", latest.hash(),
+                        ex != null ? ex.getMessage() : response.getError().getMessage());
+                meterRegistry.counter("tx.replacements", "outcome", "rejected").increment();
+                transaction.retryAt(Instant.now().plusMillis(stuckAfter));
+            }
+        });
+    }
+
+    private CompletableFuture<TransactionReceipt> track(SenderAccount sender, CompletableFuture<PendingTransaction> sent,
+                                                        TxTrace trace) {
+        return sent
+                .thenCompose(transaction -> awaitReceipt(transaction, trace))
+                .thenApply(receipt -> {
+                    if (!receipt.isStatusOK()) {
+                        throw new CompletionException(new TransactionException(String.format(
+                                "Transaction %s has failed with status: %s. Gas used: %s.",
+                                receipt.getTransactionHash(), receipt.getStatus(), receipt.getGasUsed()),
+                                receipt));
+                    }
+                    trace.mark(TxStage.RECEIPT);
+                    return receipt;
+                })
+                .whenComplete((receipt, ex) -> {
+                    sender.release();
+                    trace.finish(ex);
+                });
+    }
+
+    private SignedTransaction sign(SenderAccount sender, BigInteger nonce, BigInteger gasPrice, BigInteger gasLimit, String to, String data) {
+        RawTransaction rawTransaction = to == null
+                ? RawTransaction.createContractTransaction(nonce, gasPrice, gasLimit, BigInteger.ZERO, data)
+                : RawTransaction.createTransaction(nonce, gasPrice, gasLimit, to, data);
+        Credentials credentials = sender.getCredentials();
+        byte[] signed = chainId > 0
+                ? TransactionEncoder.signMessage(rawTransaction, chainId, credentials)
+                : TransactionEncoder.signMessage(rawTransaction, credentials);
+        String raw = Numeric.toHexString(signed);
+        return new SignedTransaction(credentials.getAddress(), nonce, to, data, gasPrice, gasLimit, Hash.sha3(raw), raw);
+    }
+
+    private void broadcast(SenderAccount sender, SignedTransaction signed, TxTrace trace) throws IOException {
+        NonceManager nonceManager = sender.getNonceManager();
+        EthSendTransaction response;
+        try {
+            response = web3j.ethSendRawTransaction(signed.raw()).send();
+        } catch (IOException | RuntimeException e) {
+            // the node may have received it, so the nonce is not reused
+            nonceManager.confirm(signed.nonce());
+            throw e;
+        }
+        if (response.hasError()) {
+            // the nonce was not consumed, the next transaction reuses it
+            nonceManager.release(signed.nonce());
+            throw new TransactionRejectedException("Error processing transaction request: " + response.getError().getMessage());
+        }
+        nonceManager.confirm(signed.nonce());
+        trace.mark(TxStage.SUBMITTED);
+        log.debug("Sent transaction {} with nonce {}", response.getTransactionHash(), signed.nonce());
+    }
+
+    private CompletableFuture<TransactionReceipt> awaitReceipt(PendingTransaction transaction, TxTrace trace) {
+        CompletableFuture<TransactionReceipt> result = new CompletableFuture<>();
+        pending.add(transaction);
+        result.whenComplete((receipt, ex) -> pending.remove(transaction));
+        pollReceipt(transaction, Instant.now().plusMillis(receiptTimeout), trace, result);
+        return result;
+    }
+
+    private void pollReceipt(PendingTransaction transaction, Instant deadline, TxTrace trace,
+                             CompletableFuture<TransactionReceipt> result) {
+        receiptOf(transaction).thenAccept(receipt -> {
+            if (receipt.isPresent()) {
+                trace.mark(TxStage.INCLUDED);
+                result.complete(receipt.get());
+            } else if (Instant.now().isAfter(deadline)) {
+                expire(transaction, trace, result);
+            } else {
+                taskScheduler.schedule(() -> pollReceipt(transaction, deadline, trace, result),
+                        Instant.now().plus(Duration.ofMillis(receiptPollInterval)));
+            }
+        });
+    }
+
+    /**
+     * Give up waiting for a receipt, telling a transaction that may still be mined apart from
+     * one whose nonce was used by another transaction
+     */
+    private void expire(PendingTransaction transaction, TxTrace trace, CompletableFuture<TransactionReceipt> result) {
+        SignedTransaction latest = transaction.latest();
+        web3j.ethGetTransactionCount(latest.from(), DefaultBlockParameterName.LATEST).sendAsync()
+                .handle((response, ex) -> ex == null && !response.hasError()
+                        && response.getTransactionCount().compareTo(latest.nonce()) > 0)
+                .thenAccept(nonceUsed -> {
+                    if (!nonceUsed) {
+                        result.completeExceptionally(new TransactionException(
+                                "Transaction receipt was not generated after " + receiptTimeout
+                                        + "ms for transaction: " + latest.hash(), latest.hash()));
+                        return;
+                    }
+                    // a version may have been mined since the last poll, otherwise another transaction took the nonce
+                    receiptOf(transaction).thenAccept(receipt -> {
+                        if (receipt.isPresent()) {
+                            trace.mark(TxStage.INCLUDED);
+                            result.complete(receipt.get());
+                        } else {
+                            result.completeExceptionally(new TransactionRejectedException("Nonce " + latest.nonce()
+                                    + " of " + latest.from() + " was used by another transaction than " + latest.hash()));
+                        }
+                    });
+                });
+    }
+
+    /**
+     * @return the receipt of whichever version of the transaction was mined, empty if none is known yet
+     */
+    private CompletableFuture<Optional<TransactionReceipt>> receiptOf(PendingTransaction transaction) {
+        List<CompletableFuture<Optional<TransactionReceipt>>> polls = transaction.versions.stream()
+                .map(version -> web3j.ethGetTransactionReceipt(version.hash()).sendAsync()
+                        .handle((response, ex) -> ex == null && !response.hasError()
+                                ? response.getTransactionReceipt()
+                                : Optional.<TransactionReceipt>empty()))
+                .toList();
+        return CompletableFuture.allOf(polls.toArray(CompletableFuture[]::new)).thenApply(ignored -> polls.stream()
+                .map(CompletableFuture::join)
+                .flatMap(Optional::stream)
+                .findFirst());
+    }
+
+    /**
+     * A transaction to {@link #prepare}
+     * @param to   the contract address, {@code null} for a contract creation
+     * @param data the encoded function call or the contract creation code
+     */
+    public record Call(String to, String data) {
+    }
+
+    /**
+     * A sent transaction and its replacements, all sharing one nonce
+     */
+    private static final class PendingTransaction {
+
+        final List<SignedTransaction> versions = new CopyOnWriteArrayList<>();
+        final Consumer<SignedTransaction> beforeSend;
+        /** Set while a replacement is being signed and broadcast */
+        final AtomicBoolean replacing = new AtomicBoolean();
+        volatile Instant stuckAt;
+
+        PendingTransaction(SignedTransaction original, Consumer<SignedTransaction> beforeSend, Instant stuckAt) {
+            this.versions.add(original);
+            this.beforeSend = beforeSend;
+            this.stuckAt = stuckAt;
+        }
+
+        SignedTransaction latest() {
+            return versions.get(versions.size() - 1);
+        }
+
+        void replaced(SignedTransaction replacement, Instant stuckAt) {
+            versions.add(replacement);
+            retryAt(stuckAt);
+        }
+
+        void retryAt(Instant stuckAt) {
+            this.stuckAt = stuckAt;
+            replacing.set(false);
+        }
+    }
+}
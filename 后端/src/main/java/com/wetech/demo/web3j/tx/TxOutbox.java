@@ -0,0 +1,523 @@
+package com.wetech.demo.web3j.tx;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wetech.demo.web3j.admission.AdmissionRejectedException;
+import com.wetech.demo.web3j.admission.AdmissionScheduler;
+import com.wetech.demo.web3j.admission.WorkClass;
+import com.wetech.demo.web3j.metrics.ContractCallMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.exceptions.TransactionException;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Durable outbox of contract writes.
+ * <p>
+ * A write is appended to a write-ahead log before its ticket is returned, and its signed
+ * form is appended before it is broadcast, so after a restart every unfinished write is
+ * either re-broadcast byte for byte (same nonce and hash, never duplicated) or, if it was
+ * never signed, submitted for the first time. Gas-bumped replacements are logged the same
+ * way, and after a restart all versions of a transaction are watched. The idempotency keys a
+ * write was requested with are logged with its intent, so retries find it across restarts.
+ * <p>
+ * A signed write whose receipt does not show up, or whose broadcast failed, stays signed and
+ * is re-broadcast; only a reverted receipt, or a transaction the node rejected or whose nonce
+ * another transaction used, fails it. Terminal states are logged as well; the log
+ * is compacted down to unfinished and recently finished writes.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TxOutbox {
+
+    public enum Status { PENDING, SIGNED, MINED, FAILED }
+
+    private final TransactionSubmitter transactionSubmitter;
+    private final SenderPool senderPool;
+    private final AdmissionScheduler admissionScheduler;
+    private final ContractCallMetrics callMetrics;
+    private final TxTracer txTracer;
+    private final TaskScheduler taskScheduler;
+    private final ObjectMapper objectMapper;
+
+    @Value("${web3j.outbox.path:data/tx-outbox.log}")
+    private String path;
+
+    @Value("${web3j.outbox.max-pending:10000}")
+    private int maxPending;
+
+    @Value("${web3j.outbox.retention:10000}")
+    private int retention;
+
+    @Value("${web3j.outbox.compact-threshold:50000}")
+    private long compactThreshold;
+
+    @Value("${web3j.outbox.retry-delay-ms:1000}")
+    private long retryDelay;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    /** Guarded by {@link #entries} */
+    private final Map<String, Entry> byIdempotencyKey = new HashMap<>();
+    /** Held shared while a record is logged and applied, exclusively while the log is rewritten. */
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private WriteAheadLog wal;
+    private int pending;
+
+    @PostConstruct
+    void init() throws IOException {
+        wal = new WriteAheadLog(Path.of(path));
+        for (String line : wal.replay()) {
+            try {
+                Record record = objectMapper.readValue(line, Record.class);
+                if (record.type().equals(Record.INTENT)) {
+                    entries.put(record.ticket(), new Entry(record, null));
+                } else if (entries.containsKey(record.ticket())) {
+                    entries.get(record.ticket()).apply(record);
+                }
+            } catch (JsonProcessingException e) {
+                log.warn("Skipping unreadable outbox record: {}", line);
+            }
+        }
+        entries.values().forEach(entry -> {
+            entry.recovered();
+            index(entry);
+        });
+        List<Entry> unfinished = entries.values().stream().filter(entry -> !entry.isFinished()).toList();
+        pending = unfinished.size();
+        trim();
+        wal.rewrite(snapshot());
+        log.info("Outbox recovered {} writes, {} unfinished", entries.size(), unfinished.size());
+
+        // re-broadcast signed writes in nonce order before any new nonce is assigned
+        unfinished.stream()
+                .filter(entry -> !entry.signed.isEmpty())
+                .sorted(Comparator.comparing(entry -> entry.signed.get(0).nonce()))
+                .forEach(this::resume);
+        unfinished.stream()
+                .filter(entry -> entry.signed.isEmpty())
+                .forEach(entry -> {
+                    entry.trace = txTracer.start(entry.function);
+                    dispatch(entry);
+                });
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        wal.close();
+    }
+
+    /**
+     * Durably record a contract write and submit it from the primary sender in the background
+     * @param contract the contract type, e.g. {@code SimpleStorage}
+     * @param function the contract function, e.g. {@code set}
+     * @param to       the contract address
+     * @param data     the encoded function call
+     * @param trace    the lifecycle trace of the transaction
+     * @return the ticket, returned once the write is on disk
+     * @throws AdmissionRejectedException if too many writes are unfinished
+     */
+    public TxTicket submit(String contract, String function, String to, String data, TxTrace trace) {
+        return submit(contract, function, senderPool.primary().getAddress(), to, data, trace);
+    }
+
+    /**
+     * Like {@link #submit(String, String, String, String, TxTrace)}, for writes whose effect does
+     * not depend on {@code msg.sender}; they are signed by the least-loaded account of the pool
+     */
+    public TxTicket submitFromAnySender(String contract, String function, String to, String data, TxTrace trace) {
+        return submit(contract, function, null, to, data, trace);
+    }
+
+    private TxTicket submit(String contract, String function, String from, String to, String data, TxTrace trace) {
+        synchronized (entries) {
+            if (pending >= maxPending) {
+                throw new AdmissionRejectedException(WorkClass.WRITE);
+            }
+            pending++;
+        }
+        Map<String, String> idempotencyKeys = trace.idempotencyKeys();
+        Record intent = new Record(Record.INTENT, UUID.randomUUID().toString(), System.currentTimeMillis(),
+                contract, function, to, data, from, null, null, null, null, null, null, null, null, null,
+                idempotencyKeys.isEmpty() ? null : idempotencyKeys);
+        Entry entry = new Entry(intent, trace);
+        try {
+            persist(intent, () -> {
+                synchronized (entries) {
+                    entries.put(entry.ticket, entry);
+                    index(entry);
+                }
+            });
+        } catch (IOException e) {
+            synchronized (entries) {
+                pending--;
+            }
+            throw new UncheckedIOException("Failed to record the write in the outbox", e);
+        }
+        dispatch(entry);
+        return new TxTicket(entry.ticket, entry.receipt);
+    }
+
+    /**
+     * @param ticket the ticket ID
+     * @param debug  whether to include the per-stage timings
+     * @return the state of the write, empty if the ticket is unknown or expired
+     */
+    public Optional<Map<String, String>> status(String ticket, boolean debug) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(ticket);
+        }
+        return Optional.ofNullable(entry).map(found -> found.toResponse(debug));
+    }
+
+    /**
+     * @param idempotencyKey a key recorded with {@link TxTrace#idempotencyKey}
+     * @return the write logged with the key, also after a restart, as long as the outbox retains it
+     */
+    public Optional<KeyedWrite> findByIdempotencyKey(String idempotencyKey) {
+        synchronized (entries) {
+            return Optional.ofNullable(byIdempotencyKey.get(idempotencyKey))
+                    .map(entry -> new KeyedWrite(entry.idempotencyKeys.get(idempotencyKey), entry.createdAt,
+                            new TxTicket(entry.ticket, entry.receipt)));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${web3j.outbox.compact-interval-ms:60000}")
+    void compact() throws IOException {
+        if (wal.appendedSinceRewrite() < compactThreshold) {
+            return;
+        }
+        stateLock.writeLock().lock();
+        try {
+            wal.rewrite(snapshot());
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    private void dispatch(Entry entry) {
+        CompletableFuture<TransactionReceipt> future;
+        try {
+            future = admissionScheduler.submit(WorkClass.WRITE,
+                    () -> callMetrics.record(entry.contract, entry.function,
+                            () -> transactionSubmitter.submit(
+                                    entry.from == null ? senderPool.leastLoaded() : senderPool.account(entry.from),
+                                    entry.to, entry.data, entry.trace, signed -> signed(entry, signed))),
+                    entry.trace.submitted());
+        } catch (AdmissionRejectedException e) {
+            // the write is already durable, keep it until the node has capacity
+            taskScheduler.schedule(() -> dispatch(entry), Instant.now().plusMillis(retryDelay));
+            return;
+        }
+        future.whenComplete((receipt, ex) -> settle(entry, receipt, ex));
+    }
+
+    /**
+     * Re-broadcast the signed versions of a write and track them to a receipt again
+     */
+    private void resume(Entry entry) {
+        entry.trace = txTracer.start(entry.function);
+        CompletableFuture<TransactionReceipt> future;
+        try {
+            future = callMetrics.record(entry.contract, entry.function,
+                    () -> transactionSubmitter.resume(entry.versions(), entry.trace, signed -> signed(entry, signed)));
+        } catch (RuntimeException e) {
+            // e.g. signed by a key no longer configured; one such write must not stop the startup
+            log.warn("Cannot resume outbox write {}: {}", entry.ticket, e.getMessage());
+            entry.trace.finish(e);
+            complete(entry, null, e);
+            return;
+        }
+        future.whenComplete((receipt, ex) -> settle(entry, receipt, ex));
+    }
+
+    /**
+     * Record the outcome of a write, unless it was signed and may still be mined: a receipt
+     * timeout or a failed broadcast says nothing about whether the node has the transaction,
+     * and submitting the write afresh could pay twice, so it is re-broadcast and watched again
+     */
+    private void settle(Entry entry, TransactionReceipt receipt, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        boolean inDoubt = cause instanceof TransactionException transactionException
+                ? transactionException.getTransactionReceipt().isEmpty()
+                : cause != null && !(cause instanceof TransactionRejectedException);
+        if (inDoubt && entry.isSigned()) {
+            log.warn("Outbox write {} may still be mined, re-broadcasting: {}", entry.ticket, cause.getMessage());
+            taskScheduler.schedule(() -> resume(entry), Instant.now().plusMillis(retryDelay));
+            return;
+        }
+        complete(entry, receipt, ex);
+    }
+
+    private void signed(Entry entry, SignedTransaction signed) {
+        try {
+            persist(new Record(Record.SIGNED, entry.ticket, System.currentTimeMillis(), null, null, null, null,
+                    signed.from(), signed.nonce(), signed.gasPrice(), signed.gasLimit(), signed.hash(), signed.raw(),
+                    null, null, null, null, null), entry::apply);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to record the signed transaction in the outbox", e);
+        }
+    }
+
+    private void complete(Entry entry, TransactionReceipt receipt, Throwable ex) {
+        Record record;
+        if (ex == null) {
+            record = new Record(Record.MINED, entry.ticket, System.currentTimeMillis(), null, null, null, null,
+                    null, null, null, null, receipt.getTransactionHash(), null, receipt.getBlockNumber(),
+                    receipt.getGasUsed(), receipt.getStatus(), null, null);
+        } else {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            TransactionReceipt failed = cause instanceof TransactionException transactionException
+                    ? transactionException.getTransactionReceipt().orElse(null)
+                    : null;
+            record = new Record(Record.FAILED, entry.ticket, System.currentTimeMillis(), null, null, null, null,
+                    null, null, null, null, failed == null ? null : failed.getTransactionHash(), null,
+                    failed == null ? null : failed.getBlockNumber(), failed == null ? null : failed.getGasUsed(),
+                    failed == null ? null : failed.getStatus(), String.valueOf(cause.getMessage()), null);
+        }
+        try {
+            persist(record, entry::apply);
+        } catch (IOException e) {
+            log.error("Failed to record the outcome of outbox write {}", entry.ticket, e);
+            entry.apply(record);
+        }
+        synchronized (entries) {
+            pending--;
+            trim();
+        }
+        if (ex == null) {
+            entry.receipt.complete(receipt);
+        } else {
+            entry.receipt.completeExceptionally(ex);
+        }
+    }
+
+    private void persist(Record record, Runnable apply) throws IOException {
+        persist(record, (Record applied) -> apply.run());
+    }
+
+    private void persist(Record record, java.util.function.Consumer<Record> apply) throws IOException {
+        String line = objectMapper.writeValueAsString(record);
+        stateLock.readLock().lock();
+        try {
+            wal.append(line);
+            apply.accept(record);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forget the oldest finished writes beyond the retention; callers hold the entries lock
+     */
+    private void trim() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() - pending > retention && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.isFinished()) {
+                iterator.remove();
+                entry.idempotencyKeys.keySet().forEach(key -> byIdempotencyKey.remove(key, entry));
+            }
+        }
+    }
+
+    /**
+     * Make a write findable by its idempotency keys; callers hold the entries lock
+     */
+    private void index(Entry entry) {
+        entry.idempotencyKeys.keySet().forEach(key -> byIdempotencyKey.put(key, entry));
+    }
+
+    private List<String> snapshot() throws JsonProcessingException {
+        List<Record> records = new ArrayList<>();
+        synchronized (entries) {
+            entries.values().forEach(entry -> records.addAll(entry.records()));
+        }
+        List<String> lines = new ArrayList<>(records.size());
+        for (Record record : records) {
+            lines.add(objectMapper.writeValueAsString(record));
+        }
+        return lines;
+    }
+
+    private static final class Entry {
+
+        final String ticket;
+        final String contract;
+        final String function;
+        /** The required sender, {@code null} if any pool account may sign */
+        final String from;
+        final String to;
+        final String data;
+        final long createdAt;
+        /** The idempotency keys of the requests this write answers, each mapped to its request */
+        final Map<String, String> idempotencyKeys;
+        final CompletableFuture<TransactionReceipt> receipt = new CompletableFuture<>();
+        volatile TxTrace trace;
+        Status status = Status.PENDING;
+        /** The signed transaction followed by its replacements */
+        final List<SignedTransaction> signed = new ArrayList<>(1);
+        Record outcome;
+
+        Entry(Record intent, TxTrace trace) {
+            this.ticket = intent.ticket();
+            this.contract = intent.contract();
+            this.function = intent.function();
+            this.from = intent.from();
+            this.to = intent.to();
+            this.data = intent.data();
+            this.createdAt = intent.time();
+            this.idempotencyKeys = intent.idempotencyKeys() == null ? Map.of() : intent.idempotencyKeys();
+            this.trace = trace;
+        }
+
+        synchronized void apply(Record record) {
+            switch (record.type()) {
+                case Record.SIGNED -> {
+                    // a replacement signed while another version was being mined is moot
+                    if (outcome == null) {
+                        signed.add(new SignedTransaction(record.from(), record.nonce(), to, data, record.gasPrice(),
+                                record.gasLimit(), record.hash(), record.raw()));
+                        status = Status.SIGNED;
+                    }
+                }
+                case Record.MINED -> {
+                    outcome = record;
+                    status = Status.MINED;
+                }
+                case Record.FAILED -> {
+                    outcome = record;
+                    status = Status.FAILED;
+                }
+                default -> {
+                }
+            }
+        }
+
+        /**
+         * Complete the receipt of a write that finished before a restart from its logged outcome
+         */
+        synchronized void recovered() {
+            if (status == Status.MINED) {
+                TransactionReceipt mined = new TransactionReceipt();
+                mined.setTransactionHash(outcome.hash());
+                mined.setBlockNumber(Numeric.encodeQuantity(outcome.blockNumber()));
+                mined.setGasUsed(Numeric.encodeQuantity(outcome.gasUsed()));
+                mined.setStatus(outcome.receiptStatus());
+                receipt.complete(mined);
+            } else if (status == Status.FAILED) {
+                receipt.completeExceptionally(new TransactionException(outcome.error()));
+            }
+        }
+
+        synchronized boolean isSigned() {
+            return !signed.isEmpty();
+        }
+
+        synchronized List<SignedTransaction> versions() {
+            return List.copyOf(signed);
+        }
+
+        synchronized boolean isFinished() {
+            return status == Status.MINED || status == Status.FAILED;
+        }
+
+        synchronized List<Record> records() {
+            List<Record> records = new ArrayList<>(signed.size() + 2);
+            records.add(new Record(Record.INTENT, ticket, createdAt, contract, function, to, data,
+                    from, null, null, null, null, null, null, null, null, null,
+                    idempotencyKeys.isEmpty() ? null : idempotencyKeys));
+            for (SignedTransaction version : signed) {
+                records.add(new Record(Record.SIGNED, ticket, createdAt, null, null, null, null, version.from(),
+                        version.nonce(), version.gasPrice(), version.gasLimit(), version.hash(), version.raw(),
+                        null, null, null, null, null));
+            }
+            if (outcome != null) {
+                records.add(outcome);
+            }
+            return records;
+        }
+
+        synchronized Map<String, String> toResponse(boolean debug) {
+            Map<String, String> response = new LinkedHashMap<>();
+            response.put("ticket", ticket);
+            response.put("status", status.name());
+            response.put("contract", contract);
+            response.put("function", function);
+            response.put("contractAddress", to);
+            response.put("createdAt", Instant.ofEpochMilli(createdAt).toString());
+            if (!signed.isEmpty()) {
+                SignedTransaction latest = signed.get(signed.size() - 1);
+                response.put("from", latest.from());
+                response.put("nonce", latest.nonce().toString());
+                response.put("gasPrice", latest.gasPrice().toString());
+                response.put("transactionHash", latest.hash());
+                if (signed.size() > 1) {
+                    response.put("replacements", String.valueOf(signed.size() - 1));
+                }
+            }
+            if (outcome != null) {
+                if (outcome.hash() != null) {
+                    response.put("transactionHash", outcome.hash());
+                }
+                if (outcome.blockNumber() != null) {
+                    response.put("blockNumber", outcome.blockNumber().toString());
+                    response.put("gasUsed", outcome.gasUsed().toString());
+                    response.put("receiptStatus", outcome.receiptStatus());
+                }
+                if (outcome.error() != null) {
+                    response.put("error", outcome.error());
+                }
+            }
+            if (debug && trace != null) {
+                response.putAll(trace.toResponse());
+            }
+            return response;
+        }
+    }
+
+    /**
+     * A write found by one of its idempotency keys
+     * @param request   the request the key was first used with
+     * @param createdAt when the write was accepted, in epoch milliseconds
+     * @param ticket    the ticket of the write
+     */
+    public record KeyedWrite(String request, long createdAt, TxTicket ticket) {
+    }
+
+    /**
+     * One line of the write-ahead log; which fields are set depends on the type
+     * @param idempotencyKeys the idempotency keys of an intent, each mapped to its request
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Record(String type, String ticket, Long time, String contract, String function, String to, String data,
+                  String from, BigInteger nonce, BigInteger gasPrice, BigInteger gasLimit, String hash, String raw,
+                  BigInteger blockNumber, BigInteger gasUsed, String receiptStatus, String error,
+                  Map<String, String> idempotencyKeys) {
+
+        static final String INTENT = "intent";
+        static final String SIGNED = "signed";
+        static final String MINED = "mined";
+        static final String FAILED = "failed";
+    }
+}
@@ -0,0 +1,30 @@
+package com.wetech.demo.web3j.tx;
+
+/**
+ * Stages of a transaction from the HTTP request to the mined receipt, in order.
+ */
+public enum TxStage {
+
+    /** The write request has been accepted by the controller. */
+    ACCEPTED("accepted"),
+    /** A nonce has been assigned to the transaction. */
+    NONCE_ASSIGNED("nonceAssigned"),
+    /** The transaction has been signed. */
+    SIGNED("signed"),
+    /** {@code eth_sendRawTransaction} has been acknowledged by the node. */
+    SUBMITTED("submitted"),
+    /** The transaction has been observed in a block. */
+    INCLUDED("included"),
+    /** The receipt has been checked and handed back to the caller. */
+    RECEIPT("receipt");
+
+    private final String key;
+
+    TxStage(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+}
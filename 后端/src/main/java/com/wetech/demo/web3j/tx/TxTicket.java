@@ -0,0 +1,26 @@
+package com.wetech.demo.web3j.tx;
+
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Handle on a write accepted into the {@link TxOutbox}
+ * @param id      the ticket ID, for {@code GET /api/tx/{ticket}}
+ * @param receipt completed once the transaction is mined
+ */
+public record TxTicket(String id, CompletableFuture<TransactionReceipt> receipt) {
+
+    /**
+     * @return the body of a {@code 202 Accepted} response
+     */
+    public Map<String, String> toResponse() {
+        Map<String, String> response = new LinkedHashMap<>();
+        response.put("ticket", id);
+        response.put("status", TxOutbox.Status.PENDING.name());
+        response.put("statusUrl", "/api/tx/" + id);
+        return response;
+    }
+}
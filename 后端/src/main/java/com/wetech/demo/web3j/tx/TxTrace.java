@@ -0,0 +1,131 @@
+package com.wetech.demo.web3j.tx;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-transaction lifecycle trace.
+ * <p>
+ * Each {@link TxStage} is recorded once: as an event on the {@code tx.lifecycle}
+ * observation (a span when a tracing bridge is present) and as a
+ * {@code tx.lifecycle.stage} timer measuring the time since the previous stage.
+ * Create instances through {@link TxTracer}.
+ */
+public class TxTrace {
+
+    /** Request header asking write endpoints to return the trace in the response. */
+    public static final String DEBUG_HEADER = "X-Debug-Trace";
+
+    private final String function;
+    private final MeterRegistry meterRegistry;
+    private final Observation observation;
+    private final long[] marks = new long[TxStage.values().length];
+    private final CompletableFuture<Void> submitted = new CompletableFuture<>();
+    /** Idempotency keys of the requests this write answers, each mapped to its request */
+    private final Map<String, String> idempotencyKeys = new LinkedHashMap<>();
+    private TxStage last;
+    private boolean finished;
+
+    TxTrace(String function, MeterRegistry meterRegistry, Observation observation) {
+        this.function = function;
+        this.meterRegistry = meterRegistry;
+        this.observation = observation;
+        mark(TxStage.ACCEPTED);
+    }
+
+    /**
+     * Record that the transaction reached a stage; repeated marks of the same stage are ignored
+     * @param stage the stage reached
+     */
+    public void mark(TxStage stage) {
+        record(stage);
+        if (stage == TxStage.SUBMITTED) {
+            // completed outside the lock, dependents may run on this thread
+            submitted.complete(null);
+        }
+    }
+
+    private synchronized void record(TxStage stage) {
+        if (marks[stage.ordinal()] != 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        marks[stage.ordinal()] = now;
+        if (last != null) {
+            Timer.builder("tx.lifecycle.stage")
+                    .description("Time spent reaching a transaction stage from the previous one")
+                    .tag("function", function)
+                    .tag("stage", stage.key())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(now - marks[last.ordinal()], TimeUnit.NANOSECONDS);
+        }
+        last = stage;
+        observation.event(Observation.Event.of("tx." + stage.key()));
+    }
+
+    /**
+     * Close the trace
+     * @param error the failure, or {@code null} if the transaction succeeded
+     */
+    public void finish(Throwable error) {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (error != null) {
+                observation.error(error);
+            }
+            observation.stop();
+        }
+        submitted.complete(null);
+    }
+
+    /**
+     * @return a future completed once the transaction has been handed to the node, or once
+     * the trace finished without getting that far
+     */
+    public CompletableFuture<Void> submitted() {
+        return submitted;
+    }
+
+    /**
+     * Record the {@code Idempotency-Key} the write was requested with; the outbox logs it with
+     * the write, so a retry after a restart still finds the write
+     * @param key     the client's idempotency key
+     * @param request describes what the write does, see {@code IdempotencyStore#execute}
+     */
+    public synchronized void idempotencyKey(String key, String request) {
+        idempotencyKeys.put(key, request);
+    }
+
+    /**
+     * @return the idempotency keys recorded so far, each mapped to its request
+     */
+    public synchronized Map<String, String> idempotencyKeys() {
+        return Map.copyOf(idempotencyKeys);
+    }
+
+    /**
+     * @return milliseconds since {@link TxStage#ACCEPTED} for every stage reached so far,
+     * keyed {@code trace.<stage>}
+     */
+    public synchronized Map<String, String> toResponse() {
+        Map<String, String> response = new LinkedHashMap<>();
+        long accepted = marks[TxStage.ACCEPTED.ordinal()];
+        for (TxStage stage : TxStage.values()) {
+            long mark = marks[stage.ordinal()];
+            if (mark != 0) {
+                response.put("trace." + stage.key(), String.format("%.3f", (mark - accepted) / 1_000_000.0));
+            }
+        }
+        return response;
+    }
+}
@@ -0,0 +1,31 @@
+package com.wetech.demo.web3j.tx;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates {@link TxTrace}s backed by the application's meter and observation registries.
+ */
+@Component
+@RequiredArgsConstructor
+public class TxTracer {
+
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * Start tracing a transaction; the returned trace has already reached {@link TxStage#ACCEPTED}
+     * @param function the contract function being called, e.g. {@code transfer}
+     * @return the trace
+     */
+    public TxTrace start(String function) {
+        Observation observation = Observation.createNotStarted("tx.lifecycle", observationRegistry)
+                .contextualName("tx " + function)
+                .lowCardinalityKeyValue("function", function)
+                .start();
+        return new TxTrace(function, meterRegistry, observation);
+    }
+}
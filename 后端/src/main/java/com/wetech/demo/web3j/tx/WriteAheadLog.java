@@ -0,0 +1,141 @@
+package com.wetech.demo.web3j.tx;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only log of text records, one per line, durable once {@link #append} returns.
+ * <p>
+ * Concurrent appends share fsyncs (group commit): a writer whose record was already
+ * covered by another thread's {@code force} returns without forcing again. A record
+ * torn by a crash (no trailing newline) is dropped when the log is reopened.
+ */
+class WriteAheadLog implements Closeable {
+
+    private final Path path;
+    private final Object writeLock = new Object();
+    private final Object forceLock = new Object();
+    private FileChannel channel;
+    private long written;
+    private long forced;
+    private long appendedSinceRewrite;
+
+    WriteAheadLog(Path path) throws IOException {
+        this.path = path;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        written = channel.size();
+        forced = written;
+        channel.position(written);
+    }
+
+    /**
+     * Read every complete record, truncating a torn tail so later appends start on a new line
+     */
+    List<String> replay() throws IOException {
+        synchronized (writeLock) {
+            byte[] content = Files.readAllBytes(path);
+            int end = content.length;
+            while (end > 0 && content[end - 1] != '\n') {
+                end--;
+            }
+            List<String> records = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i < end; i++) {
+                if (content[i] == '\n') {
+                    if (i > start) {
+                        records.add(new String(content, start, i - start, StandardCharsets.UTF_8));
+                    }
+                    start = i + 1;
+                }
+            }
+            channel.truncate(end);
+            channel.position(end);
+            written = end;
+            forced = end;
+            return records;
+        }
+    }
+
+    /**
+     * Append a record and wait until it is on disk
+     * @param record a single line of text
+     */
+    void append(String record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+        long end;
+        synchronized (writeLock) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            end = written += buffer.capacity();
+            appendedSinceRewrite++;
+        }
+        synchronized (forceLock) {
+            if (forced >= end) {
+                return;
+            }
+            long target;
+            synchronized (writeLock) {
+                target = written;
+            }
+            channel.force(false);
+            forced = target;
+        }
+    }
+
+    /**
+     * Atomically replace the whole log, e.g. to drop records of finished work
+     * @param records the records of the new log
+     */
+    void rewrite(List<String> records) throws IOException {
+        synchronized (forceLock) {
+            synchronized (writeLock) {
+                Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+                try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    for (String record : records) {
+                        ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                    }
+                    out.force(true);
+                }
+                channel.close();
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                written = channel.size();
+                channel.position(written);
+                forced = written;
+                appendedSinceRewrite = 0;
+            }
+        }
+    }
+
+    long appendedSinceRewrite() {
+        synchronized (writeLock) {
+            return appendedSinceRewrite;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (forceLock) {
+            synchronized (writeLock) {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.wetech.demo.web3j.tx;
+
+import com.wetech.demo.web3j.address.Address20;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Merges writes that overwrite each other into one transaction, last writer wins. The first
+ * write to a slot opens a batch; writes arriving until its window elapses, and while the
+ * previous transaction of the slot is still unmined, replace its content. The batch is then
+ * submitted once with the latest write, and every merged caller gets its ticket and receipt.
+ * <p>
+ * Only for writes whose outcome is fully determined by the last one, such as storing a value.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WriteCoalescer {
+
+    private final TaskScheduler taskScheduler;
+    private final MeterRegistry meterRegistry;
+
+    /** Guarded by itself */
+    private final Map<SlotKey, Slot> slots = new HashMap<>();
+
+    /**
+     * @param to       the contract address
+     * @param function the contract function, e.g. {@code set}
+     * @param windowMs how long a batch stays open for further writes
+     * @param trace    the lifecycle trace of the caller's write
+     * @param write    submits the write with the trace of its batch; replaced by every later write
+     *                 merged into the same batch
+     * @return the ticket of the transaction the write was merged into, completed once it is in the outbox
+     */
+    public CompletableFuture<TxTicket> submit(String to, String function, long windowMs, TxTrace trace,
+                                              Function<TxTrace, TxTicket> write) {
+        SlotKey key = new SlotKey(Address20.of(to), function);
+        synchronized (slots) {
+            Slot slot = slots.computeIfAbsent(key, ignored -> new Slot());
+            if (slot.open != null) {
+                slot.open.write = write;
+                slot.open.merged.add(trace);
+                meterRegistry.counter("tx.coalesced", "function", function).increment();
+                return slot.open.ticket;
+            }
+            Batch batch = new Batch(write, trace);
+            slot.open = batch;
+            taskScheduler.schedule(() -> windowElapsed(key, batch), Instant.now().plusMillis(windowMs));
+            return batch.ticket;
+        }
+    }
+
+    private void windowElapsed(SlotKey key, Batch batch) {
+        synchronized (slots) {
+            batch.windowElapsed = true;
+            Slot slot = slots.get(key);
+            if (slot.previous != null && !slot.previous.isDone()) {
+                // sent when the previous transaction settles
+                return;
+            }
+            slot.open = null;
+            slot.previous = batch.ticket.thenCompose(TxTicket::receipt);
+            slot.previous.whenComplete((receipt, ex) -> settled(key));
+        }
+        send(batch);
+    }
+
+    private void settled(SlotKey key) {
+        Batch next;
+        synchronized (slots) {
+            Slot slot = slots.get(key);
+            if (slot.open == null) {
+                slots.remove(key);
+                return;
+            }
+            if (!slot.open.windowElapsed) {
+                return;
+            }
+            next = slot.open;
+            slot.open = null;
+            slot.previous = next.ticket.thenCompose(TxTicket::receipt);
+            slot.previous.whenComplete((receipt, ex) -> settled(key));
+        }
+        send(next);
+    }
+
+    private void send(Batch batch) {
+        // the merged callers' retries must find the transaction too
+        batch.merged.forEach(merged -> merged.idempotencyKeys().forEach(batch.trace::idempotencyKey));
+        TxTicket ticket;
+        try {
+            ticket = batch.write.apply(batch.trace);
+        } catch (RuntimeException e) {
+            log.warn("Coalesced write of {} callers failed", batch.merged.size() + 1, e);
+            batch.merged.forEach(trace -> trace.finish(e));
+            batch.ticket.completeExceptionally(e);
+            return;
+        }
+        if (!batch.merged.isEmpty()) {
+            log.debug("Coalesced {} writes into ticket {}", batch.merged.size() + 1, ticket.id());
+            // the transaction carries the trace of the batch's first write; the merged ones end with it
+            ticket.receipt().whenComplete((receipt, ex) -> batch.merged.forEach(trace -> trace.finish(ex)));
+        }
+        batch.ticket.complete(ticket);
+    }
+
+    private record SlotKey(Address20 to, String function) {
+    }
+
+    private static final class Slot {
+
+        /** The batch still taking writes or waiting for {@link #previous}, if any */
+        private Batch open;
+        /** The receipt of the slot's last transaction */
+        private CompletableFuture<?> previous;
+    }
+
+    private static final class Batch {
+
+        private final TxTrace trace;
+        private final List<TxTrace> merged = new ArrayList<>();
+        private final CompletableFuture<TxTicket> ticket = new CompletableFuture<>();
+        private Function<TxTrace, TxTicket> write;
+        private boolean windowElapsed;
+
+        private Batch(Function<TxTrace, TxTicket> write, TxTrace trace) {
+            this.write = write;
+            this.trace = trace;
+        }
+    }
+}